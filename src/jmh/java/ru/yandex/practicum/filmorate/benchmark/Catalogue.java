@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * In-memory H2 database with the application schema and a synthetic catalogue of the given size.
+ * Films get one to three genres and a director, users like films with a skew towards low film ids,
+ * so popular films have many likes and the rest a few. The same size always gives the same data.
+ */
+class Catalogue {
+
+    static final String[] TITLE_WORDS = {"star", "night", "river", "storm", "garden", "empire", "winter", "echo"};
+
+    private static final int GENRES = 6;
+    private static final int RATINGS = 5;
+    private static final int BATCH_SIZE = 1000;
+
+    final SingleConnectionDataSource dataSource;
+    final NamedParameterJdbcTemplate jdbcTemplate;
+    final int films;
+    final int users;
+    final int directors;
+
+    Catalogue(int films, int users, int likesPerUser) {
+        this.films = films;
+        this.users = users;
+        this.directors = Math.max(1, films / 10);
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:benchmark-" + films + "-" + users, "sa", "", true);
+        jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        var populator = new ResourceDatabasePopulator(new ClassPathResource("schema.sql"),
+                new ClassPathResource("data.sql"));
+        populator.setSqlScriptEncoding("UTF-8");
+        populator.execute(dataSource);
+        load(likesPerUser, new Random(42));
+    }
+
+    /**
+     * Closes the only connection, which drops the database.
+     */
+    void close() {
+        dataSource.destroy();
+    }
+
+    private void load(int likesPerUser, Random random) {
+        List<SqlParameterSource> rows = new ArrayList<>();
+        for (var id = 1; id <= directors; id++) {
+            rows.add(new MapSqlParameterSource()
+                    .addValue("id", id)
+                    .addValue("name", "director " + id));
+        }
+        insert("INSERT INTO director(id, name) VALUES (:id, :name)", rows);
+        for (var id = 1; id <= films; id++) {
+            rows.add(new MapSqlParameterSource()
+                    .addValue("id", id)
+                    .addValue("name", TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " "
+                            + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " " + id)
+                    .addValue("description", "description of film " + id)
+                    .addValue("release_date", LocalDate.of(1950 + random.nextInt(70), 1 + random.nextInt(12), 1))
+                    .addValue("duration", 60 + random.nextInt(120))
+                    .addValue("rating_id", 1 + random.nextInt(RATINGS)));
+        }
+        insert("INSERT INTO film(id, name, description, release_date, duration, rating_id) " +
+                "VALUES (:id, :name, :description, :release_date, :duration, :rating_id)", rows);
+        for (var id = 1; id <= films; id++) {
+            var first = 1 + random.nextInt(GENRES);
+            var count = 1 + random.nextInt(3);
+            for (var i = 0; i < count; i++) {
+                rows.add(new MapSqlParameterSource()
+                        .addValue("film_id", id)
+                        .addValue("genre_id", 1 + (first + i - 1) % GENRES));
+            }
+        }
+        insert("INSERT INTO film_genre(film_id, genre_id) VALUES (:film_id, :genre_id)", rows);
+        for (var id = 1; id <= films; id++) {
+            rows.add(new MapSqlParameterSource()
+                    .addValue("film_id", id)
+                    .addValue("director_id", 1 + random.nextInt(directors)));
+        }
+        insert("INSERT INTO film_director(film_id, director_id) VALUES (:film_id, :director_id)", rows);
+        for (var id = 1; id <= users; id++) {
+            rows.add(new MapSqlParameterSource()
+                    .addValue("id", id)
+                    .addValue("email", "user" + id + "@mail.com")
+                    .addValue("login", "user" + id)
+                    .addValue("name", "user " + id)
+                    .addValue("birthday", LocalDate.of(1960 + random.nextInt(45), 1 + random.nextInt(12), 1)));
+        }
+        insert("INSERT INTO users(id, email, login, name, birthday) VALUES (:id, :email, :login, :name, :birthday)",
+                rows);
+        for (var id = 1; id <= users; id++) {
+            Set<Long> liked = new HashSet<>();
+            var count = Math.min(likesPerUser, films);
+            while (liked.size() < count) {
+                var skewed = Math.pow(random.nextDouble(), 3);
+                liked.add(1 + (long) (skewed * films));
+            }
+            for (var filmId : liked) {
+                rows.add(new MapSqlParameterSource()
+                        .addValue("film_id", filmId)
+                        .addValue("user_id", id));
+            }
+        }
+        insert("INSERT INTO film_likes(film_id, user_id) VALUES (:film_id, :user_id)", rows);
+        jdbcTemplate.update("UPDATE film AS f SET like_count = " +
+                "(SELECT COUNT(*) FROM film_likes AS l WHERE l.film_id = f.id)", new MapSqlParameterSource());
+    }
+
+    private void insert(String sql, List<SqlParameterSource> rows) {
+        for (var from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + BATCH_SIZE, rows.size()))
+                    .toArray(SqlParameterSource[]::new));
+        }
+        rows.clear();
+    }
+}
@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.impl.dao.DbFilmStorage;
+import ru.yandex.practicum.filmorate.storage.index.FilmCache;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikeBuffer;
+import ru.yandex.practicum.filmorate.storage.index.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.index.SocialIndex;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read paths of DbFilmStorage against an embedded H2 catalogue of the given number of films.
+ * The film cache holds no entries, so findById maps its row every time, and findPage measures
+ * the film row mapper with genre and director hydration on a page of pageSize films.
+ * Run with mvn -P jmh test-compile exec:exec, which adds -prof gc and writes target/jmh-result.json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmStorageBenchmark {
+
+    @Param({"1000", "10000"})
+    private int films;
+
+    @Param({"1000"})
+    private int pageSize;
+
+    private Catalogue catalogue;
+    private DbFilmStorage filmStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        catalogue = new Catalogue(films, films, 20);
+        var jdbcTemplate = catalogue.jdbcTemplate;
+        var popularityIndex = new FilmPopularityIndex(jdbcTemplate);
+        popularityIndex.rebuild();
+        var searchIndex = new FilmSearchIndex(jdbcTemplate);
+        searchIndex.rebuild();
+        var socialIndex = new SocialIndex(jdbcTemplate, 10);
+        socialIndex.rebuild();
+        var likeBuffer = new LikeBuffer(jdbcTemplate, new DataSourceTransactionManager(catalogue.dataSource),
+                popularityIndex, socialIndex, false, LikeBuffer.Durability.GROUP, 1000);
+        filmStorage = new DbFilmStorage(jdbcTemplate, popularityIndex, searchIndex, socialIndex,
+                new ReferenceDataCache(jdbcTemplate), new FilmCache(0, Duration.ofMinutes(10)), likeBuffer);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        catalogue.close();
+    }
+
+    @Benchmark
+    public List<Film> findAll() {
+        return filmStorage.findAll();
+    }
+
+    @Benchmark
+    public Optional<Film> findById() {
+        return filmStorage.findById(randomFilmId());
+    }
+
+    @Benchmark
+    public List<Film> findPage() {
+        return filmStorage.findPage(ThreadLocalRandom.current().nextInt(Math.max(1, films - pageSize)), pageSize);
+    }
+
+    @Benchmark
+    public List<Film> getPopular() {
+        return filmStorage.getPopular(10, null, null);
+    }
+
+    @Benchmark
+    public List<Film> getPopularByGenreAndYear() {
+        var random = ThreadLocalRandom.current();
+        return filmStorage.getPopular(10, 1 + random.nextInt(6), 1950 + random.nextInt(70));
+    }
+
+    @Benchmark
+    public List<Film> findByTitle() {
+        return filmStorage.findByTitle(randomTitleWord());
+    }
+
+    @Benchmark
+    public List<Film> findByDirectorName() {
+        return filmStorage.findByDirectorName("director " + (1 + ThreadLocalRandom.current().nextInt(10)));
+    }
+
+    @Benchmark
+    public List<Film> findByTitleOrDirectorName() {
+        return filmStorage.findByTitleOrDirectorName(randomTitleWord(), "director 1");
+    }
+
+    @Benchmark
+    public List<Film> getCommon() {
+        var random = ThreadLocalRandom.current();
+        return filmStorage.getCommon(1 + random.nextInt(catalogue.users), 1 + random.nextInt(catalogue.users));
+    }
+
+    private long randomFilmId() {
+        return 1 + ThreadLocalRandom.current().nextInt(films);
+    }
+
+    private static String randomTitleWord() {
+        return Catalogue.TITLE_WORDS[ThreadLocalRandom.current().nextInt(Catalogue.TITLE_WORDS.length)];
+    }
+}
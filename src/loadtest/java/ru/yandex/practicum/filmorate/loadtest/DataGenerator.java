@@ -0,0 +1,242 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Fills a fresh H2 file database, created from schema.sql and data.sql, with a synthetic data set.
+ * Likes and reviews go to films drawn from a Zipf distribution and friendships to users drawn from one,
+ * so a few films are very popular and a few users have very many followers. Likes and friendships
+ * also get their feed events. Rows get ids 1..n in insertion order; the same options and seed
+ * always give the same data.
+ */
+@Slf4j
+class DataGenerator {
+
+    static final String[] TITLE_WORDS = {"star", "night", "river", "storm", "garden", "empire", "winter", "echo"};
+
+    private static final int GENRES = 6;
+    private static final int RATINGS = 5;
+    private static final int BATCH_SIZE = 1000;
+    private static final long LIKE_EVENT = 1;
+    private static final long FRIEND_EVENT = 3;
+    private static final long ADD_OPERATION = 2;
+
+    private final LoadTestOptions options;
+    private final Random random;
+    private final List<SqlParameterSource> rows = new ArrayList<>();
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private long timestamp = System.currentTimeMillis() - 30L * 24 * 60 * 60 * 1000;
+
+    DataGenerator(LoadTestOptions options) {
+        this.options = options;
+        this.random = new Random(options.getInt("seed"));
+    }
+
+    void generate(Path database) {
+        deleteFiles(database);
+        var dataSource = new SingleConnectionDataSource("jdbc:h2:file:" + database.toAbsolutePath(),
+                "sa", "password", true);
+        try {
+            jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+            var populator = new ResourceDatabasePopulator(new ClassPathResource("schema.sql"),
+                    new ClassPathResource("data.sql"));
+            populator.setSqlScriptEncoding("UTF-8");
+            populator.execute(dataSource);
+            var users = options.getInt("users");
+            var films = options.getInt("films");
+            var directors = options.getInt("directors");
+            insertUsers(users);
+            insertDirectors(directors);
+            insertFilms(films, directors);
+            insertLikes(users, films);
+            insertFriends(users);
+            insertReviews(users, films);
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    private void insertUsers(int users) {
+        for (var id = 1; id <= users; id++) {
+            rows.add(new MapSqlParameterSource()
+                    .addValue("email", "user" + id + "@mail.com")
+                    .addValue("login", "user" + id)
+                    .addValue("name", "user " + id)
+                    .addValue("birthday", LocalDate.of(1960 + random.nextInt(45), 1 + random.nextInt(12), 1)));
+        }
+        insert("INSERT INTO users(email, login, name, birthday) VALUES (:email, :login, :name, :birthday)");
+        log.info("generator: {} users", users);
+    }
+
+    private void insertDirectors(int directors) {
+        for (var id = 1; id <= directors; id++) {
+            rows.add(new MapSqlParameterSource("name", "director " + id));
+        }
+        insert("INSERT INTO director(name) VALUES (:name)");
+        log.info("generator: {} directors", directors);
+    }
+
+    private void insertFilms(int films, int directors) {
+        for (var id = 1; id <= films; id++) {
+            rows.add(new MapSqlParameterSource()
+                    .addValue("name", TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " "
+                            + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " " + id)
+                    .addValue("description", "description of film " + id)
+                    .addValue("release_date", LocalDate.of(1950 + random.nextInt(70), 1 + random.nextInt(12), 1))
+                    .addValue("duration", 60 + random.nextInt(120))
+                    .addValue("rating_id", 1 + random.nextInt(RATINGS)));
+        }
+        insert("INSERT INTO film(name, description, release_date, duration, rating_id) " +
+                "VALUES (:name, :description, :release_date, :duration, :rating_id)");
+        for (var id = 1; id <= films; id++) {
+            var first = random.nextInt(GENRES);
+            var count = 1 + random.nextInt(3);
+            for (var i = 0; i < count; i++) {
+                rows.add(new MapSqlParameterSource()
+                        .addValue("film_id", id)
+                        .addValue("genre_id", 1 + (first + i) % GENRES));
+            }
+        }
+        insert("INSERT INTO film_genre(film_id, genre_id) VALUES (:film_id, :genre_id)");
+        var directorZipf = new Zipf(directors, 1.0);
+        for (var id = 1; id <= films; id++) {
+            rows.add(new MapSqlParameterSource()
+                    .addValue("film_id", id)
+                    .addValue("director_id", directorZipf.next(random)));
+        }
+        insert("INSERT INTO film_director(film_id, director_id) VALUES (:film_id, :director_id)");
+        log.info("generator: {} films", films);
+    }
+
+    private void insertLikes(int users, int films) {
+        var filmZipf = new Zipf(films, options.getDouble("zipf"));
+        var perUser = Math.min(options.getInt("likes-per-user"), films);
+        List<SqlParameterSource> events = new ArrayList<>();
+        for (var userId = 1; userId <= users; userId++) {
+            for (var filmId : distinct(filmZipf, perUser, -1)) {
+                rows.add(new MapSqlParameterSource()
+                        .addValue("film_id", filmId)
+                        .addValue("user_id", userId));
+                events.add(event(userId, LIKE_EVENT, filmId));
+            }
+        }
+        var likes = rows.size();
+        insert("INSERT INTO film_likes(film_id, user_id) VALUES (:film_id, :user_id)");
+        jdbcTemplate.update("UPDATE film AS f SET like_count = " +
+                "(SELECT COUNT(*) FROM film_likes AS l WHERE l.film_id = f.id)", new MapSqlParameterSource());
+        insertEvents(events);
+        log.info("generator: {} likes", likes);
+    }
+
+    private void insertFriends(int users) {
+        var userZipf = new Zipf(users, options.getDouble("zipf"));
+        var perUser = Math.min(options.getInt("friends-per-user"), users - 1);
+        List<SqlParameterSource> events = new ArrayList<>();
+        for (var userId = 1; userId <= users; userId++) {
+            for (var friendId : distinct(userZipf, perUser, userId)) {
+                rows.add(new MapSqlParameterSource()
+                        .addValue("user_id", userId)
+                        .addValue("friend_id", friendId));
+                events.add(event(userId, FRIEND_EVENT, friendId));
+            }
+        }
+        var friendships = rows.size();
+        insert("INSERT INTO friend(user_id, friend_id) VALUES (:user_id, :friend_id)");
+        insertEvents(events);
+        log.info("generator: {} friendships", friendships);
+    }
+
+    private void insertReviews(int users, int films) {
+        var filmZipf = new Zipf(films, options.getDouble("zipf"));
+        var reviews = options.getInt("reviews");
+        for (var id = 1; id <= reviews; id++) {
+            rows.add(new MapSqlParameterSource()
+                    .addValue("content", "review " + id + " of a " + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)])
+                    .addValue("is_positive", random.nextBoolean())
+                    .addValue("user_id", 1 + random.nextInt(users))
+                    .addValue("film_id", filmZipf.next(random)));
+        }
+        insert("INSERT INTO review(content, is_positive, user_id, film_id) " +
+                "VALUES (:content, :is_positive, :user_id, :film_id)");
+        var perReview = Math.min(options.getInt("votes-per-review"), users);
+        for (var id = 1; id <= reviews; id++) {
+            Set<Integer> voters = new HashSet<>();
+            var count = random.nextInt(perReview + 1);
+            while (voters.size() < count) {
+                voters.add(1 + random.nextInt(users));
+            }
+            for (var userId : voters) {
+                rows.add(new MapSqlParameterSource()
+                        .addValue("review_id", id)
+                        .addValue("user_id", userId)
+                        .addValue("is_like", random.nextInt(4) > 0));
+            }
+        }
+        insert("INSERT INTO review_likes(review_id, user_id, is_like) VALUES (:review_id, :user_id, :is_like)");
+        jdbcTemplate.update("UPDATE review AS r SET useful = " +
+                "(SELECT COALESCE(SUM(CASE WHEN l.is_like THEN 1 ELSE -1 END), 0) " +
+                "FROM review_likes AS l WHERE l.review_id = r.id)", new MapSqlParameterSource());
+        log.info("generator: {} reviews", reviews);
+    }
+
+    private Set<Integer> distinct(Zipf zipf, int count, int excluded) {
+        Set<Integer> drawn = new HashSet<>();
+        while (drawn.size() < count) {
+            var next = zipf.next(random);
+            if (next != excluded) {
+                drawn.add(next);
+            }
+        }
+        return drawn;
+    }
+
+    private SqlParameterSource event(long userId, long eventType, long entityId) {
+        return new MapSqlParameterSource()
+                .addValue("timestamp", timestamp += 1 + random.nextInt(1000))
+                .addValue("user_id", userId)
+                .addValue("event_type", eventType)
+                .addValue("operation", ADD_OPERATION)
+                .addValue("entity_id", entityId);
+    }
+
+    private void insertEvents(List<SqlParameterSource> events) {
+        rows.addAll(events);
+        insert("INSERT INTO feed(timestamp, user_id, event_type, operation, entity_id) " +
+                "VALUES (:timestamp, :user_id, :event_type, :operation, :entity_id)");
+    }
+
+    private void insert(String sql) {
+        for (var from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + BATCH_SIZE, rows.size()))
+                    .toArray(SqlParameterSource[]::new));
+        }
+        rows.clear();
+    }
+
+    private static void deleteFiles(Path database) {
+        try {
+            Files.createDirectories(database.toAbsolutePath().getParent());
+            Files.deleteIfExists(Path.of(database + ".mv.db"));
+            Files.deleteIfExists(Path.of(database + ".trace.db"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Sends requests from a number of concurrent clients to a running application. Every client picks
+ * endpoints by the weights of the request mix, and films and users by the same Zipf distribution
+ * as the generated data, so the popular rows are also the hot ones. Latencies of the warmup period
+ * are not recorded.
+ */
+class LoadDriver {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final String url;
+    private final LoadTestOptions options;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+    private final Map<String, Function<Random, HttpRequest.Builder>> endpoints = new LinkedHashMap<>();
+    private final Zipf films;
+    private final Zipf users;
+    private final int reviews;
+
+    LoadDriver(String url, LoadTestOptions options) {
+        this.url = url;
+        this.options = options;
+        films = new Zipf(options.getInt("films"), options.getDouble("zipf"));
+        users = new Zipf(options.getInt("users"), options.getDouble("zipf"));
+        reviews = Math.max(1, options.getInt("reviews"));
+        endpoints.put("getFilm", random -> get("/films/" + films.next(random)));
+        endpoints.put("getFilms", random -> get("/films?afterId=" + random.nextInt(options.getInt("films"))
+                + "&limit=100"));
+        endpoints.put("popular", random -> get("/films/popular?count=10"));
+        endpoints.put("search", random -> get("/films/search?by=title,director&query="
+                + DataGenerator.TITLE_WORDS[random.nextInt(DataGenerator.TITLE_WORDS.length)]));
+        endpoints.put("common", random -> get("/films/common?userId=" + users.next(random)
+                + "&friendId=" + users.next(random)));
+        endpoints.put("like", random -> request("/films/" + films.next(random) + "/like/" + users.next(random))
+                .PUT(HttpRequest.BodyPublishers.noBody()));
+        endpoints.put("unlike", random -> request("/films/" + films.next(random) + "/like/" + users.next(random))
+                .DELETE());
+        endpoints.put("getUser", random -> get("/users/" + users.next(random)));
+        endpoints.put("friends", random -> get("/users/" + users.next(random) + "/friends"));
+        endpoints.put("addFriend", random -> request("/users/" + (1 + random.nextInt(options.getInt("users")))
+                + "/friends/" + users.next(random)).PUT(HttpRequest.BodyPublishers.noBody()));
+        endpoints.put("feed", random -> get("/users/" + users.next(random) + "/feed?limit=50"));
+        endpoints.put("recommendations", random -> get("/users/" + users.next(random) + "/recommendations"));
+        endpoints.put("reviews", random -> get("/reviews?count=10&filmId=" + films.next(random)));
+        endpoints.put("voteReview", random -> request("/reviews/" + (1 + random.nextInt(reviews))
+                + (random.nextInt(4) > 0 ? "/like/" : "/dislike/") + users.next(random))
+                .PUT(HttpRequest.BodyPublishers.noBody()));
+        endpoints.put("addReview", random -> request("/reviews")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(String.format(
+                        "{\"content\":\"load test review\",\"isPositive\":%b,\"userId\":%d,\"filmId\":%d}",
+                        random.nextBoolean(), 1 + random.nextInt(options.getInt("users")), films.next(random)))));
+    }
+
+    /**
+     * Runs the warmup and the measured period and returns the results by endpoint in mix order.
+     */
+    Map<String, EndpointResult> run() {
+        var mix = options.getMix();
+        mix.values().removeIf(weight -> weight <= 0);
+        for (var name : mix.keySet()) {
+            if (!endpoints.containsKey(name)) {
+                throw new IllegalArgumentException("unknown endpoint " + name + " in mix, endpoints are "
+                        + endpoints.keySet());
+            }
+        }
+        var names = mix.keySet().toArray(String[]::new);
+        var weights = new int[names.length];
+        var total = 0;
+        for (var i = 0; i < names.length; i++) {
+            total += mix.get(names[i]);
+            weights[i] = total;
+        }
+        var clients = options.getInt("clients");
+        var start = System.nanoTime();
+        var measureFrom = start + Duration.ofSeconds(options.getInt("warmup")).toNanos();
+        var stopAt = measureFrom + Duration.ofSeconds(options.getInt("duration")).toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        List<Future<Map<String, Samples>>> futures = new ArrayList<>();
+        for (var i = 0; i < clients; i++) {
+            var seed = options.getInt("seed") + 1000L * (i + 1);
+            var totalWeight = total;
+            futures.add(executor.submit(() -> runClient(new Random(seed), names, weights, totalWeight,
+                    measureFrom, stopAt)));
+        }
+        Map<String, Samples> merged = new LinkedHashMap<>();
+        for (var name : names) {
+            merged.put(name, new Samples());
+        }
+        try {
+            for (var future : futures) {
+                future.get().forEach((name, samples) -> merged.get(name).addAll(samples));
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("load client failed", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        var seconds = (stopAt - measureFrom) / 1e9;
+        Map<String, EndpointResult> results = new LinkedHashMap<>();
+        merged.forEach((name, samples) -> results.put(name, samples.toResult(name, seconds)));
+        return results;
+    }
+
+    private Map<String, Samples> runClient(Random random, String[] names, int[] weights, int totalWeight,
+                                           long measureFrom, long stopAt) {
+        Map<String, Samples> samples = new LinkedHashMap<>();
+        for (var name : names) {
+            samples.put(name, new Samples());
+        }
+        while (System.nanoTime() < stopAt) {
+            var index = Arrays.binarySearch(weights, random.nextInt(totalWeight) + 1);
+            var name = names[index >= 0 ? index : -index - 1];
+            var request = endpoints.get(name).apply(random).timeout(TIMEOUT).build();
+            var started = System.nanoTime();
+            boolean failed;
+            try {
+                var status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                failed = status < 200 || status >= 300;
+            } catch (IOException e) {
+                failed = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            var finished = System.nanoTime();
+            if (started >= measureFrom && finished <= stopAt) {
+                samples.get(name).add(finished - started, failed);
+            }
+        }
+        return samples;
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return request(path).GET();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(url + path));
+    }
+
+    static void print(Map<String, EndpointResult> results) {
+        System.out.printf("%-16s %9s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "rps", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        results.values().forEach(result -> System.out.printf("%-16s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                result.endpoint, result.requests, result.errors, result.throughput,
+                result.p50, result.p90, result.p99, result.max));
+    }
+
+    static void write(Map<String, EndpointResult> results, Path report) {
+        try {
+            Files.createDirectories(report.toAbsolutePath().getParent());
+            try (var writer = new PrintWriter(Files.newBufferedWriter(report, StandardCharsets.UTF_8))) {
+                writer.println("endpoint,requests,errors,rps,p50_ms,p90_ms,p99_ms,max_ms");
+                results.values().forEach(result -> writer.printf(Locale.ROOT,
+                        "%s,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f%n", result.endpoint, result.requests, result.errors,
+                        result.throughput, result.p50, result.p90, result.p99, result.max));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static class EndpointResult {
+        final String endpoint;
+        final int requests;
+        final int errors;
+        final double throughput;
+        final double p50;
+        final double p90;
+        final double p99;
+        final double max;
+
+        EndpointResult(String endpoint, int requests, int errors, double throughput, long[] sorted) {
+            this.endpoint = endpoint;
+            this.requests = requests;
+            this.errors = errors;
+            this.throughput = throughput;
+            p50 = percentile(sorted, 0.50);
+            p90 = percentile(sorted, 0.90);
+            p99 = percentile(sorted, 0.99);
+            max = sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6;
+        }
+
+        private static double percentile(long[] sorted, double rank) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[(int) Math.ceil(rank * sorted.length) - 1] / 1e6;
+        }
+    }
+
+    /**
+     * Latencies in nanoseconds of one endpoint, grown like an ArrayList but without boxing.
+     */
+    private static class Samples {
+        private long[] latencies = new long[1024];
+        private int size;
+        private int errors;
+
+        void add(long latency, boolean failed) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = latency;
+            if (failed) {
+                errors++;
+            }
+        }
+
+        void addAll(Samples other) {
+            for (var i = 0; i < other.size; i++) {
+                add(other.latencies[i], false);
+            }
+            errors += other.errors;
+        }
+
+        EndpointResult toResult(String name, double seconds) {
+            var sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return new EndpointResult(name, size, errors, size / seconds, sorted);
+        }
+    }
+}
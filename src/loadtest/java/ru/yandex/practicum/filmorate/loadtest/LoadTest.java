@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Load test of the film, user and review endpoints. Unless url is given, generates a data set into
+ * an H2 file database, starts the application on it in a separate JVM and stops it afterwards, so
+ * the application and the load clients do not share a heap. Prints throughput and latency
+ * percentiles by endpoint and writes them to the report CSV.
+ * Run with mvn -P loadtest test-compile exec:exec -Dloadtest.args="users=1000 duration=30".
+ */
+@Slf4j
+public class LoadTest {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    public static void main(String[] args) throws Exception {
+        var options = new LoadTestOptions(args);
+        log.info("load test: {}", options);
+        var database = Path.of(options.get("db"));
+        var url = options.get("url");
+        Process application = null;
+        if (url.isBlank()) {
+            if (options.getBoolean("generate")) {
+                new DataGenerator(options).generate(database);
+            }
+            var port = freePort();
+            application = start(database, port, options.get("app-args"));
+            url = "http://localhost:" + port;
+            awaitHealthy(url, application);
+        }
+        try {
+            var results = new LoadDriver(url, options).run();
+            LoadDriver.print(results);
+            LoadDriver.write(results, Path.of(options.get("report")));
+            log.info("load test: report written to {}", options.get("report"));
+        } finally {
+            if (application != null) {
+                application.destroy();
+                application.waitFor();
+            }
+        }
+    }
+
+    private static Process start(Path database, int port, String appArgs) throws IOException {
+        var output = database.toAbsolutePath().resolveSibling("app.log");
+        Files.createDirectories(output.getParent());
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                FilmorateApplication.class.getName(),
+                "--spring.datasource.url=jdbc:h2:file:" + database.toAbsolutePath(),
+                "--server.port=" + port));
+        if (!appArgs.isBlank()) {
+            command.addAll(Arrays.asList(appArgs.trim().split("\\s+")));
+        }
+        log.info("load test: starting application on port {}, output in {}", port, output);
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(output.toFile())
+                .start();
+    }
+
+    private static void awaitHealthy(String url, Process application) throws InterruptedException {
+        var client = HttpClient.newHttpClient();
+        var request = HttpRequest.newBuilder(URI.create(url + "/actuator/health")).build();
+        var deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!application.isAlive()) {
+                throw new IllegalStateException("application exited with " + application.exitValue());
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(500);
+        }
+        application.destroy();
+        throw new IllegalStateException("application did not start in " + STARTUP_TIMEOUT);
+    }
+
+    private static int freePort() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
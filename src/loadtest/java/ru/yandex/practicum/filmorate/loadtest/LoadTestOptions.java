@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Options of a load test run, given as name=value arguments. Unset options keep their defaults.
+ */
+class LoadTestOptions {
+
+    static final String DEFAULT_MIX = "getFilm=25,getFilms=5,popular=15,search=10,common=5,like=10,unlike=3," +
+            "getUser=5,friends=5,addFriend=2,feed=5,recommendations=3,reviews=5,voteReview=1,addReview=1";
+
+    private final Map<String, String> values = new LinkedHashMap<>(Map.ofEntries(
+            Map.entry("users", "10000"),
+            Map.entry("films", "5000"),
+            Map.entry("directors", "500"),
+            Map.entry("likes-per-user", "20"),
+            Map.entry("friends-per-user", "10"),
+            Map.entry("reviews", "20000"),
+            Map.entry("votes-per-review", "5"),
+            Map.entry("zipf", "1.1"),
+            Map.entry("seed", "42"),
+            Map.entry("generate", "true"),
+            Map.entry("db", "target/loadtest/filmorate"),
+            Map.entry("url", ""),
+            Map.entry("app-args", ""),
+            Map.entry("clients", "32"),
+            Map.entry("warmup", "10"),
+            Map.entry("duration", "60"),
+            Map.entry("mix", DEFAULT_MIX),
+            Map.entry("report", "target/loadtest/report.csv")));
+
+    LoadTestOptions(String[] args) {
+        for (var arg : args) {
+            var separator = arg.indexOf('=');
+            if (separator < 0 || !values.containsKey(arg.substring(0, separator))) {
+                throw new IllegalArgumentException("unknown option " + arg + ", options are " + values.keySet());
+            }
+            values.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+    }
+
+    String get(String name) {
+        return values.get(name);
+    }
+
+    int getInt(String name) {
+        return Integer.parseInt(values.get(name));
+    }
+
+    double getDouble(String name) {
+        return Double.parseDouble(values.get(name));
+    }
+
+    boolean getBoolean(String name) {
+        return Boolean.parseBoolean(values.get(name));
+    }
+
+    /**
+     * The request mix as endpoint names and weights.
+     */
+    Map<String, Integer> getMix() {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (var entry : values.get("mix").split(",")) {
+            var parts = entry.split("=");
+            mix.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+        return mix;
+    }
+
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+}
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Draws ranks 1..n with probability proportional to 1 / rank^exponent, rank 1 being the most frequent.
+ */
+class Zipf {
+
+    private final double[] cumulative;
+
+    Zipf(int n, double exponent) {
+        cumulative = new double[n];
+        var sum = 0.0;
+        for (var rank = 1; rank <= n; rank++) {
+            sum += 1 / Math.pow(rank, exponent);
+            cumulative[rank - 1] = sum;
+        }
+        for (var i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    int next(Random random) {
+        var index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return (index >= 0 ? index : -index - 1) + 1;
+    }
+}
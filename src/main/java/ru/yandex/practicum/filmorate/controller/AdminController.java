@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.CacheStatistics;
+import ru.yandex.practicum.filmorate.model.SlowQuery;
+import ru.yandex.practicum.filmorate.service.AdminService;
+
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final AdminService adminService;
+
+    @GetMapping("/cache/films")
+    public CacheStatistics getFilmCacheStatistics() {
+        log.info("GET /admin/cache/films");
+        var statistics = adminService.getFilmCacheStatistics();
+        log.info("completion GET /admin/cache/films: {}", statistics);
+        return statistics;
+    }
+
+    @GetMapping("/slow-queries")
+    public List<SlowQuery> getSlowQueries() {
+        log.info("GET /admin/slow-queries");
+        var slowQueries = adminService.getSlowQueries();
+        log.info("completion GET /admin/slow-queries: size {}", slowQueries.size());
+        return slowQueries;
+    }
+}
@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.service.ExportService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Full dumps as newline-delimited JSON, written row by row while the database cursor is read.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/export")
+@RequiredArgsConstructor
+public class ExportController {
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+
+    private final ExportService exportService;
+    private final ObjectMapper objectMapper;
+
+    @GetMapping("/films.ndjson")
+    public ResponseEntity<StreamingResponseBody> exportFilms(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return export("/export/films.ndjson", acceptEncoding, exportService::exportFilms);
+    }
+
+    @GetMapping("/users.ndjson")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return export("/export/users.ndjson", acceptEncoding, exportService::exportUsers);
+    }
+
+    @GetMapping("/likes.ndjson")
+    public ResponseEntity<StreamingResponseBody> exportLikes(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return export("/export/likes.ndjson", acceptEncoding, exportService::exportLikes);
+    }
+
+    @GetMapping("/feed.ndjson")
+    public ResponseEntity<StreamingResponseBody> exportFeed(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return export("/export/feed.ndjson", acceptEncoding, exportService::exportFeed);
+    }
+
+    private <T> ResponseEntity<StreamingResponseBody> export(String path, String acceptEncoding,
+                                                             Consumer<Consumer<T>> source) {
+        var gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        log.info("GET {}: gzip {}", path, gzip);
+        StreamingResponseBody body = outputStream -> {
+            var count = new AtomicLong();
+            try (var out = gzip ? new GZIPOutputStream(outputStream) : outputStream) {
+                writeLines(out, source, count);
+            }
+            log.info("completion GET {}: size {}", path, count.get());
+        };
+        var response = ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_VALUE));
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING).body(body);
+    }
+
+    private <T> void writeLines(OutputStream out, Consumer<Consumer<T>> source, AtomicLong count) throws IOException {
+        try (var generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            source.accept(row -> {
+                try {
+                    generator.writeObject(row);
+                    generator.writeRaw('\n');
+                    count.incrementAndGet();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
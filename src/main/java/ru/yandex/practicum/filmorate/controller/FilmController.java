@@ -1,8 +1,10 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,13 +16,21 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.utils.SortingConstraint;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @Validated
@@ -29,7 +39,12 @@ import java.util.List;
 @RequiredArgsConstructor
 public class FilmController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 10000;
+
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -49,13 +64,49 @@ public class FilmController {
     }
 
     @GetMapping
-    public List<Film> getAll() {
-        log.info("GET /films: all");
-        var resultFilms =  filmService.getFilms();
-        log.info("completion GET /films: size {}", resultFilms.size());
+    public List<Film> getAll(@RequestParam(required = false) @Min(0) Long afterId,
+                             @RequestParam(required = false) @Min(1) @Max(MAX_PAGE_SIZE) Integer limit,
+                             @RequestParam(required = false) @Size(max = MAX_PAGE_SIZE) List<Long> ids) {
+        if (ids != null) {
+            log.info("GET /films: ids {}", ids);
+            var resultFilms = filmService.getFilms(ids);
+            log.info("completion GET /films: ids size {}", resultFilms.size());
+            return resultFilms;
+        }
+        if (afterId == null && limit == null) {
+            log.info("GET /films: all");
+            var resultFilms =  filmService.getFilms();
+            log.info("completion GET /films: size {}", resultFilms.size());
+            return resultFilms;
+        }
+        log.info("GET /films: afterId {}, limit {}", afterId, limit);
+        var resultFilms = filmService.getFilms(afterId == null ? 0 : afterId,
+                limit == null ? DEFAULT_PAGE_SIZE : limit);
+        log.info("completion GET /films: afterId {}, limit {}, size {}", afterId, limit, resultFilms.size());
         return resultFilms;
     }
 
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody stream() {
+        log.info("GET /films/stream");
+        return outputStream -> {
+            var count = new AtomicLong();
+            try (var generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                filmService.streamFilms(film -> {
+                    try {
+                        generator.writeObject(film);
+                        count.incrementAndGet();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+            log.info("completion GET /films/stream: size {}", count.get());
+        };
+    }
+
     @GetMapping("/{id}")
     public Film getById(@PathVariable Long id) {
         log.info("GET /films/{}", id);
@@ -79,6 +130,13 @@ public class FilmController {
         log.info("completion PUT /like: success");
     }
 
+    @PostMapping("/likes:batch")
+    public void putLikes(@RequestBody @NotEmpty @Size(max = MAX_BATCH_SIZE) List<FilmLike> likes) {
+        log.info("POST /films/likes:batch: size {}", likes.size());
+        filmService.putLikes(likes);
+        log.info("completion POST /films/likes:batch: success");
+    }
+
     @DeleteMapping("/{id}/like/{userId}")
     public void deleteLike(@PathVariable Long id, @PathVariable Long userId) {
         log.info("DELETE /like: {}, {}", id, userId);
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.ImportFormat;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+import ru.yandex.practicum.filmorate.service.ImportService;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Bulk loading from NDJSON or CSV bodies, rows are written in chunks with per-row error reporting.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/import")
+@RequiredArgsConstructor
+public class ImportController {
+
+    private final ImportService importService;
+
+    @PostMapping(value = "/films", consumes = {ImportFormat.NDJSON_VALUE, ImportFormat.CSV_VALUE})
+    public ImportResult importFilms(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                    InputStream body) throws IOException {
+        log.info("POST /import/films: {}", contentType);
+        var result = importService.importFilms(body, ImportFormat.of(contentType));
+        log.info("completion POST /import/films: {}", result);
+        return result;
+    }
+
+    @PostMapping(value = "/users", consumes = {ImportFormat.NDJSON_VALUE, ImportFormat.CSV_VALUE})
+    public ImportResult importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                    InputStream body) throws IOException {
+        log.info("POST /import/users: {}", contentType);
+        var result = importService.importUsers(body, ImportFormat.of(contentType));
+        log.info("completion POST /import/users: {}", result);
+        return result;
+    }
+
+    @PostMapping(value = "/friends", consumes = {ImportFormat.NDJSON_VALUE, ImportFormat.CSV_VALUE})
+    public ImportResult importFriends(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                      InputStream body) throws IOException {
+        log.info("POST /import/friends: {}", contentType);
+        var result = importService.importFriends(body, ImportFormat.of(contentType));
+        log.info("completion POST /import/friends: {}", result);
+        return result;
+    }
+
+    @PostMapping(value = "/likes", consumes = {ImportFormat.NDJSON_VALUE, ImportFormat.CSV_VALUE})
+    public ImportResult importLikes(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                    InputStream body) throws IOException {
+        log.info("POST /import/likes: {}", contentType);
+        var result = importService.importLikes(body, ImportFormat.of(contentType));
+        log.info("completion POST /import/likes: {}", result);
+        return result;
+    }
+}
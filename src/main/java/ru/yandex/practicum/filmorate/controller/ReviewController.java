@@ -18,6 +18,7 @@ import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.service.ReviewService;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import java.util.Collection;
 
@@ -27,6 +28,8 @@ import java.util.Collection;
 @RequestMapping("/reviews")
 @RequiredArgsConstructor
 public class ReviewController {
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final ReviewService reviewService;
 
     @PostMapping
@@ -64,9 +67,17 @@ public class ReviewController {
 
     @GetMapping
     public Collection<Review> getAll(@RequestParam(required = false) Long filmId,
-                                     @Min(1) @RequestParam(defaultValue = "10") long count) {
-        log.info("GET /reviews: all");
-        var resultReviews = reviewService.getAll(filmId, count);
+                                     @Min(1) @Max(MAX_PAGE_SIZE) @RequestParam(defaultValue = "10") long count,
+                                     @Min(0) @RequestParam(defaultValue = "0") long offset,
+                                     @RequestParam(required = false) Long afterId) {
+        if (offset == 0 && afterId == null) {
+            log.info("GET /reviews: all");
+            var resultReviews = reviewService.getAll(filmId, count);
+            log.info("completion GET /reviews: size {}", resultReviews.size());
+            return resultReviews;
+        }
+        log.info("GET /reviews: filmId {}, afterId {}, offset {}, count {}", filmId, afterId, offset, count);
+        var resultReviews = reviewService.getAll(filmId, afterId, offset, count);
         log.info("completion GET /reviews: size {}", resultReviews.size());
         return resultReviews;
     }
@@ -3,15 +3,20 @@ package ru.yandex.practicum.filmorate.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
@@ -20,14 +25,24 @@ import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import javax.validation.Valid;
+import javax.validation.ValidationException;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
 import java.util.List;
 
 @Slf4j
+@Validated
 @RestController
 @RequestMapping("/users")
 @RequiredArgsConstructor
 public class UserController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 10000;
+
     private final UserService userService;
 
     private final FilmService filmService;
@@ -51,7 +66,13 @@ public class UserController {
     }
 
     @GetMapping
-    public List<User> getAll() {
+    public List<User> getAll(@RequestParam(required = false) @Size(max = MAX_PAGE_SIZE) List<Long> ids) {
+        if (ids != null) {
+            log.info("GET /users: ids {}", ids);
+            var result = userService.getUsers(ids);
+            log.info("completion GET /users: ids size {}", result.size());
+            return result;
+        }
         log.info("GET /users: all");
         var result = userService.getUsers();
         log.info("completion GET /users: size {}", result.size());
@@ -81,6 +102,14 @@ public class UserController {
         log.info("completion PUT /friends: success");
     }
 
+    @PostMapping("/{id}/friends:batch")
+    public void addFriends(@PathVariable Long id,
+                           @RequestBody @NotEmpty @Size(max = MAX_BATCH_SIZE) List<Long> friendIds) {
+        log.info("POST /users/{}/friends:batch: size {}", id, friendIds.size());
+        userService.addFriends(id, friendIds);
+        log.info("completion POST /users/{}/friends:batch: success", id);
+    }
+
     @DeleteMapping("/{id}/friends/{friendId}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteFriends(@PathVariable Long id, @PathVariable Long friendId) {
@@ -114,10 +143,48 @@ public class UserController {
     }
 
     @GetMapping("/{id}/feed")
-    public List<Feed> getUserFeed(@PathVariable Long id) {
-        log.info("GET /users/{}/feed", id);
-        var result = feedService.getUserFeed(id);
-        log.info("completion GET /users/{}/feed : {}", id, result);
+    public List<Feed> getUserFeed(@PathVariable Long id,
+                                  @RequestParam(required = false) @Min(0) Long afterEventId,
+                                  @RequestParam(required = false) @Min(1) @Max(MAX_PAGE_SIZE) Integer limit,
+                                  @RequestParam(defaultValue = "false") boolean latest) {
+        if (latest) {
+            if (afterEventId != null) {
+                throw new ValidationException("GET feed: latest and afterEventId are exclusive");
+            }
+            log.info("GET /users/{}/feed: latest, limit {}", id, limit);
+            var result = feedService.getLatestUserFeed(id, limit == null ? DEFAULT_PAGE_SIZE : limit);
+            log.info("completion GET /users/{}/feed: latest, limit {}, size {}", id, limit, result.size());
+            return result;
+        }
+        if (afterEventId == null && limit == null) {
+            log.info("GET /users/{}/feed", id);
+            var result = feedService.getUserFeed(id);
+            log.info("completion GET /users/{}/feed : {}", id, result);
+            return result;
+        }
+        log.info("GET /users/{}/feed: afterEventId {}, limit {}", id, afterEventId, limit);
+        var result = feedService.getUserFeed(id, afterEventId == null ? 0 : afterEventId,
+                limit == null ? DEFAULT_PAGE_SIZE : limit);
+        log.info("completion GET /users/{}/feed: afterEventId {}, limit {}, size {}",
+                id, afterEventId, limit, result.size());
+        return result;
+    }
+
+    @GetMapping("/{id}/feed/friends")
+    public List<Feed> getFriendFeed(@PathVariable Long id,
+                                    @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) @Min(1) @Max(MAX_PAGE_SIZE)
+                                    int limit) {
+        log.info("GET /users/{}/feed/friends: limit {}", id, limit);
+        var result = feedService.getFriendFeed(id, limit);
+        log.info("completion GET /users/{}/feed/friends: size {}", id, result.size());
         return result;
     }
+
+    @GetMapping(value = "/{id}/feed/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamUserFeed(@PathVariable Long id,
+                                     @RequestHeader(value = "Last-Event-ID", required = false)
+                                     @Min(0) Long lastEventId) {
+        log.info("GET /users/{}/feed/stream: lastEventId {}", id, lastEventId);
+        return feedService.streamUserFeed(id, lastEventId);
+    }
 }
\ No newline at end of file
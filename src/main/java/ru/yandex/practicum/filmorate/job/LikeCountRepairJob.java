@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+/**
+ * Periodically recomputes film.like_count from film_likes.
+ * Disabled unless filmorate.likes.repair-cron is set.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikeCountRepairJob {
+
+    private final FilmStorage filmStorage;
+
+    @Scheduled(cron = "${filmorate.likes.repair-cron:-}")
+    public void repair() {
+        log.info("like count repair: start");
+        var repaired = filmStorage.repairLikeCounts();
+        log.info("like count repair: {} films repaired", repaired);
+    }
+}
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Counters of an in-memory cache since startup.
+ */
+@Data
+@AllArgsConstructor
+@Builder
+public class CacheStatistics {
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    private long evictionCount;
+    private long loadCount;
+    private double averageLoadMillis;
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.model;
+
+public enum ImportFormat {
+    NDJSON,
+    CSV;
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+    public static final String CSV_VALUE = "text/csv";
+
+    public static ImportFormat of(String contentType) {
+        return contentType != null && contentType.toLowerCase().startsWith(CSV_VALUE) ? CSV : NDJSON;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of an import job, errors hold at most the first rejected rows.
+ */
+@Data
+public class ImportResult {
+    private long total;
+    private long imported;
+    private long failed;
+    @Setter(AccessLevel.NONE)
+    private final List<ImportError> errors = new ArrayList<>();
+}
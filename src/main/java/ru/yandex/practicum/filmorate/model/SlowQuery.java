@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A statement that ran longer than the slow query threshold, with its bound parameters
+ * (of the first row for a batch) and the plan H2 reported for it.
+ */
+@Data
+@AllArgsConstructor
+@Builder
+public class SlowQuery {
+    private long timestamp;
+    private double durationMillis;
+    private String sql;
+    private List<String> parameters;
+    private int batchSize;
+    private String plan;
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.model.CacheStatistics;
+import ru.yandex.practicum.filmorate.model.SlowQuery;
+
+import java.util.List;
+
+public interface AdminService {
+
+    CacheStatistics getFilmCacheStatistics();
+
+    List<SlowQuery> getSlowQueries();
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.function.Consumer;
+
+public interface ExportService {
+    void exportFilms(Consumer<Film> consumer);
+
+    void exportUsers(Consumer<User> consumer);
+
+    void exportLikes(Consumer<FilmLike> consumer);
+
+    void exportFeed(Consumer<Feed> consumer);
+}
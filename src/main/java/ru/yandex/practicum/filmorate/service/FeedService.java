@@ -1,9 +1,18 @@
 package ru.yandex.practicum.filmorate.service;
 
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.yandex.practicum.filmorate.model.Feed;
 
 import java.util.List;
 
 public interface FeedService {
     List<Feed> getUserFeed(Long id);
+
+    List<Feed> getUserFeed(Long id, long afterEventId, int limit);
+
+    List<Feed> getLatestUserFeed(Long id, int limit);
+
+    SseEmitter streamUserFeed(Long id, Long lastEventId);
+
+    List<Feed> getFriendFeed(Long id, int limit);
 }
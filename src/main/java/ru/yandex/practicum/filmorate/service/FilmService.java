@@ -1,8 +1,10 @@
 package ru.yandex.practicum.filmorate.service;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface FilmService {
     Film addFilm(Film film);
@@ -11,10 +13,18 @@ public interface FilmService {
 
     List<Film> getFilms();
 
+    List<Film> getFilms(long afterId, int limit);
+
+    List<Film> getFilms(List<Long> ids);
+
+    void streamFilms(Consumer<Film> consumer);
+
     Film getFilm(Long id);
 
     void putLike(Long id, Long userId);
 
+    void putLikes(List<FilmLike> likes);
+
     void deleteLike(Long id, Long userId);
 
     List<Film> getPopular(int count, Integer genreId, Integer year);
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.model.ImportFormat;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface ImportService {
+    ImportResult importFilms(InputStream in, ImportFormat format) throws IOException;
+
+    ImportResult importUsers(InputStream in, ImportFormat format) throws IOException;
+
+    ImportResult importFriends(InputStream in, ImportFormat format) throws IOException;
+
+    ImportResult importLikes(InputStream in, ImportFormat format) throws IOException;
+}
@@ -15,6 +15,8 @@ public interface ReviewService {
 
     Collection<Review> getAll(Long filmId, long count);
 
+    Collection<Review> getAll(Long filmId, Long afterId, long offset, long count);
+
     void addLike(long reviewId, long userId);
 
     void addDislike(long reviewId, long userId);
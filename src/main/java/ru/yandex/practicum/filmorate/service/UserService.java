@@ -12,12 +12,16 @@ public interface UserService {
 
     List<User> getUsers();
 
+    List<User> getUsers(List<Long> ids);
+
     User getById(Long id);
 
     void delete(Long id);
 
     void addFriends(Long id, Long friendId);
 
+    void addFriends(Long id, List<Long> friendIds);
+
     void deleteFriends(Long id, Long friendId);
 
     List<User> getFriends(Long id);
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.CacheStatistics;
+import ru.yandex.practicum.filmorate.model.SlowQuery;
+import ru.yandex.practicum.filmorate.service.AdminService;
+import ru.yandex.practicum.filmorate.storage.index.FilmCache;
+import ru.yandex.practicum.filmorate.storage.metrics.SlowQueryLog;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class AdminServiceImpl implements AdminService {
+
+    private final FilmCache filmCache;
+    private final SlowQueryLog slowQueryLog;
+
+    @Override
+    public CacheStatistics getFilmCacheStatistics() {
+        return filmCache.getStatistics();
+    }
+
+    @Override
+    public List<SlowQuery> getSlowQueries() {
+        return slowQueryLog.getSlowest();
+    }
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.ExportService;
+import ru.yandex.practicum.filmorate.storage.ExportStorage;
+
+import java.util.function.Consumer;
+
+@Service
+@RequiredArgsConstructor
+public class ExportServiceImpl implements ExportService {
+
+    private final ExportStorage exportStorage;
+
+    @Override
+    public void exportFilms(Consumer<Film> consumer) {
+        exportStorage.exportFilms(consumer);
+    }
+
+    @Override
+    public void exportUsers(Consumer<User> consumer) {
+        exportStorage.exportUsers(consumer);
+    }
+
+    @Override
+    public void exportLikes(Consumer<FilmLike> consumer) {
+        exportStorage.exportLikes(consumer);
+    }
+
+    @Override
+    public void exportFeed(Consumer<Feed> consumer) {
+        exportStorage.exportFeed(consumer);
+    }
+}
@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.service.impl;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.service.FeedService;
@@ -16,6 +17,7 @@ public class FeedServiceImpl implements FeedService {
 
     private final FeedStorage feedStorage;
     private final UserStorage userStorage;
+    private final FeedStreamHub feedStreamHub;
 
     @Override
     public List<Feed> getUserFeed(Long id) {
@@ -23,4 +25,33 @@ public class FeedServiceImpl implements FeedService {
                 .orElseThrow(() -> new NotFoundException(String.format("user with id == %d not found", id)));
         return feedStorage.getFeed(id);
     }
+
+    @Override
+    public List<Feed> getUserFeed(Long id, long afterEventId, int limit) {
+        userStorage.findById(id)
+                .orElseThrow(() -> new NotFoundException(String.format("user with id == %d not found", id)));
+        return feedStorage.getFeed(id, afterEventId, limit);
+    }
+
+    @Override
+    public List<Feed> getLatestUserFeed(Long id, int limit) {
+        userStorage.findById(id)
+                .orElseThrow(() -> new NotFoundException(String.format("user with id == %d not found", id)));
+        return feedStorage.getLatestFeed(id, limit);
+    }
+
+    @Override
+    public List<Feed> getFriendFeed(Long id, int limit) {
+        userStorage.findById(id)
+                .orElseThrow(() -> new NotFoundException(String.format("user with id == %d not found", id)));
+        return feedStorage.getFriendFeed(id, limit);
+    }
+
+    @Override
+    public SseEmitter streamUserFeed(Long id, Long lastEventId) {
+        userStorage.findById(id)
+                .orElseThrow(() -> new NotFoundException(String.format("user with id == %d not found", id)));
+        return feedStreamHub.subscribe(id, lastEventId,
+                (afterEventId, limit) -> feedStorage.getFeed(id, afterEventId, limit));
+    }
 }
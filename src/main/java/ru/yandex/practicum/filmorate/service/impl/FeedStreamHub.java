@@ -0,0 +1,238 @@
+package ru.yandex.practicum.filmorate.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.storage.index.FeedStoredEvent;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Pushes stored feed events to server-sent event subscribers.
+ * Every subscriber has a bounded buffer that a small shared pool writes out, so an idle connection
+ * holds no thread. A subscriber resuming from a Last-Event-ID, or one whose buffer overflowed,
+ * reads the missed events from the feed table page by page and then goes back to its buffer.
+ * Stored events are published in event id order, so an event at or below the last sent id is a duplicate.
+ */
+@Slf4j
+@Component
+public class FeedStreamHub {
+
+    private final long timeoutMillis;
+    private final int bufferSize;
+    private final ExecutorService senders;
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    public FeedStreamHub(@Value("${filmorate.feed.stream.timeout:30m}") Duration timeout,
+                         @Value("${filmorate.feed.stream.buffer-size:100}") int bufferSize,
+                         @Value("${filmorate.feed.stream.threads:4}") int threads) {
+        this.timeoutMillis = timeout.toMillis();
+        this.bufferSize = bufferSize;
+        var number = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(threads, runnable -> {
+            var thread = new Thread(runnable, "feed-stream-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Subscribes to the events of a user stored from now on, and to the stored ones after lastEventId if it is set.
+     * The loader gets an event id and a row count and returns that many events after the id, oldest first.
+     */
+    public SseEmitter subscribe(long userId, Long lastEventId, BiFunction<Long, Integer, List<Feed>> loader) {
+        var emitter = new SseEmitter(timeoutMillis);
+        var subscriber = new Subscriber(userId, emitter, loader, lastEventId);
+        subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> remove(subscriber));
+        if (lastEventId != null) {
+            schedule(subscriber);
+        }
+        return emitter;
+    }
+
+    @EventListener
+    public void onStored(FeedStoredEvent stored) {
+        for (var feed : stored.getEvents()) {
+            var userSubscribers = subscribers.get(feed.getUserId());
+            if (userSubscribers == null) {
+                continue;
+            }
+            for (var subscriber : userSubscribers) {
+                subscriber.offer(feed);
+                schedule(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Sends a comment to every subscriber so proxies keep idle connections open and closed ones are noticed.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.feed.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (var userSubscribers : subscribers.values()) {
+            for (var subscriber : userSubscribers) {
+                subscriber.heartbeatDue = true;
+                schedule(subscriber);
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @PreDestroy
+    public void stop() {
+        senders.shutdownNow();
+        for (var userSubscribers : subscribers.values()) {
+            for (var subscriber : userSubscribers) {
+                subscriber.emitter.complete();
+            }
+        }
+        subscribers.clear();
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.closed && subscriber.scheduled.compareAndSet(false, true)) {
+            senders.execute(() -> send(subscriber));
+        }
+    }
+
+    private void send(Subscriber subscriber) {
+        try {
+            subscriber.send();
+        } catch (IOException | IllegalStateException e) {
+            log.debug("feed stream: subscriber of user {} gone: {}", subscriber.userId, e.getMessage());
+            remove(subscriber);
+        } catch (RuntimeException e) {
+            log.warn("feed stream: sending to subscriber of user {} failed", subscriber.userId, e);
+            remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        } finally {
+            subscriber.scheduled.set(false);
+        }
+        if (subscriber.hasWork()) {
+            schedule(subscriber);
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscribers.computeIfPresent(subscriber.userId, (id, userSubscribers) -> {
+            userSubscribers.remove(subscriber);
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+    }
+
+    private class Subscriber {
+        private final long userId;
+        private final SseEmitter emitter;
+        private final BiFunction<Long, Integer, List<Feed>> loader;
+        private final Deque<Feed> buffer = new ArrayDeque<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private boolean behind;
+        private boolean anchored;
+        private long lastSentId;
+        private volatile boolean heartbeatDue;
+        private volatile boolean closed;
+
+        Subscriber(long userId, SseEmitter emitter, BiFunction<Long, Integer, List<Feed>> loader, Long lastEventId) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.loader = loader;
+            this.behind = lastEventId != null;
+            this.anchored = lastEventId != null;
+            this.lastSentId = lastEventId == null ? 0 : lastEventId;
+        }
+
+        /**
+         * A subscriber without a Last-Event-ID starts right before the first event it is offered,
+         * so catching up after an overflow does not replay the history from the start.
+         */
+        synchronized void offer(Feed feed) {
+            if (!anchored) {
+                anchored = true;
+                lastSentId = feed.getEventId() - 1;
+            }
+            if (buffer.size() == bufferSize) {
+                buffer.clear();
+                behind = true;
+                return;
+            }
+            buffer.addLast(feed);
+        }
+
+        synchronized boolean hasWork() {
+            return !closed && (behind || !buffer.isEmpty() || heartbeatDue);
+        }
+
+        /**
+         * Runs on one sender thread at a time. Events read from the table may also be in the buffer,
+         * only events after the last sent id are sent.
+         */
+        void send() throws IOException {
+            while (true) {
+                List<Feed> batch;
+                synchronized (this) {
+                    if (behind) {
+                        behind = false;
+                        buffer.clear();
+                        batch = null;
+                    } else if (buffer.isEmpty()) {
+                        break;
+                    } else {
+                        batch = new ArrayList<>(buffer);
+                        buffer.clear();
+                    }
+                }
+                if (batch != null) {
+                    send(batch);
+                    continue;
+                }
+                List<Feed> page;
+                do {
+                    page = loader.apply(lastSentId, bufferSize);
+                    send(page);
+                } while (page.size() == bufferSize);
+            }
+            if (heartbeatDue) {
+                heartbeatDue = false;
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+        }
+
+        private void send(List<Feed> events) throws IOException {
+            for (var feed : events) {
+                if (feed.getEventId() <= lastSentId) {
+                    continue;
+                }
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(feed.getEventId()))
+                        .data(feed, MediaType.APPLICATION_JSON));
+                lastSentId = feed.getEventId();
+            }
+        }
+    }
+}
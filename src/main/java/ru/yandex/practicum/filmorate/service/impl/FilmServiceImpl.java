@@ -2,10 +2,12 @@ package ru.yandex.practicum.filmorate.service.impl;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.EventType;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.Operation;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.storage.DirectorStorage;
@@ -13,9 +15,12 @@ import ru.yandex.practicum.filmorate.storage.FeedStorage;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
-import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -43,6 +48,21 @@ public class FilmServiceImpl implements FilmService {
         return filmStorage.findAll();
     }
 
+    @Override
+    public List<Film> getFilms(long afterId, int limit) {
+        return filmStorage.findPage(afterId, limit);
+    }
+
+    @Override
+    public List<Film> getFilms(List<Long> ids) {
+        return filmStorage.findByIds(new LinkedHashSet<>(ids));
+    }
+
+    @Override
+    public void streamFilms(Consumer<Film> consumer) {
+        filmStorage.streamAll(consumer);
+    }
+
     @Override
     public Film getFilm(Long id) {
         return filmStorage.findById(id)
@@ -64,6 +84,35 @@ public class FilmServiceImpl implements FilmService {
                 .build());
     }
 
+    /**
+     * Checks every referenced user and film with one query per table, then stores the likes
+     * and their feed events in one transaction.
+     */
+    @Override
+    @Transactional
+    public void putLikes(List<FilmLike> likes) {
+        Set<Long> userIds = likes.stream().map(FilmLike::getUserId).collect(Collectors.toSet());
+        userIds.removeAll(userStorage.findExistingIds(userIds));
+        if (!userIds.isEmpty()) {
+            throw new NotFoundException(String.format("POST likes: users %s not found", userIds));
+        }
+        Set<Long> filmIds = likes.stream().map(FilmLike::getFilmId).collect(Collectors.toSet());
+        filmIds.removeAll(filmStorage.findExistingIds(filmIds));
+        if (!filmIds.isEmpty()) {
+            throw new NotFoundException(String.format("POST likes: films %s not found", filmIds));
+        }
+        filmStorage.putLikes(likes);
+        feedStorage.recordEvents(likes.stream()
+                .distinct()
+                .map(like -> Feed.builder()
+                        .userId(like.getUserId())
+                        .eventType(EventType.LIKE)
+                        .operation(Operation.ADD)
+                        .entityId(like.getFilmId())
+                        .build())
+                .collect(Collectors.toList()));
+    }
+
     @Override
     public void deleteLike(Long id, Long userId) {
         userStorage.findById(userId)
@@ -98,11 +147,7 @@ public class FilmServiceImpl implements FilmService {
 
     @Override
     public List<Film> getRecommendation(Long id) {
-        Long userWithSimilarLikes = userStorage.findUserWithSimilarLikes(id);
-        if (userWithSimilarLikes == null) {
-            return new ArrayList<>();
-        }
-        return filmStorage.getFilmRecommendation(id, userWithSimilarLikes);
+        return filmStorage.getRecommendations(id);
     }
 
     public List<Film> searchFilms(String query, String by) {
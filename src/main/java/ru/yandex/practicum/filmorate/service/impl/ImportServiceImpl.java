@@ -0,0 +1,357 @@
+package ru.yandex.practicum.filmorate.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.ImportError;
+import ru.yandex.practicum.filmorate.model.ImportFormat;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.ImportService;
+import ru.yandex.practicum.filmorate.storage.ImportStorage;
+
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the body line by line and writes it in chunks of {@code filmorate.import.batch-size} rows,
+ * one nested transaction per chunk. References are checked with one query per chunk and table, rows
+ * that fail parsing, validation or the reference check are reported and skipped. When a chunk is
+ * rejected by the database it is retried row by row to find the offending rows.
+ */
+@Slf4j
+@Service
+public class ImportServiceImpl implements ImportService {
+
+    private final ImportStorage importStorage;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int batchSize;
+    private final int maxErrors;
+
+    public ImportServiceImpl(ImportStorage importStorage,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             Validator validator,
+                             @Value("${filmorate.import.batch-size:1000}") int batchSize,
+                             @Value("${filmorate.import.max-errors:100}") int maxErrors) {
+        this.importStorage = importStorage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+    }
+
+    @Override
+    public ImportResult importFilms(InputStream in, ImportFormat format) throws IOException {
+        var explicitIds = new AtomicBoolean();
+        var result = importRows("films", in, format, Film.class, (rows, errors) -> {
+            Set<Integer> mpaIds = new HashSet<>();
+            Set<Integer> genreIds = new HashSet<>();
+            Set<Long> directorIds = new HashSet<>();
+            for (var row : rows) {
+                var film = row.value;
+                if (film.getMpa() != null) {
+                    mpaIds.add(film.getMpa().getId());
+                }
+                Set<Integer> seen = new HashSet<>();
+                film.getGenres().removeIf(genre -> !seen.add(genre.getId()));
+                film.getGenres().forEach(genre -> genreIds.add(genre.getId()));
+                film.getDirectors().forEach(director -> directorIds.add(director.getId()));
+            }
+            var knownMpa = importStorage.findMpaIds(mpaIds);
+            var knownGenres = importStorage.findGenreIds(genreIds);
+            var knownDirectors = importStorage.findDirectorIds(directorIds);
+            List<Row<Film>> accepted = new ArrayList<>(rows.size());
+            for (var row : rows) {
+                var film = row.value;
+                var missingGenre = film.getGenres().stream()
+                        .map(Genre::getId)
+                        .filter(id -> !knownGenres.contains(id))
+                        .findFirst();
+                var missingDirector = film.getDirectors().stream()
+                        .map(Director::getId)
+                        .filter(id -> !knownDirectors.contains(id))
+                        .findFirst();
+                if (film.getMpa() != null && !knownMpa.contains(film.getMpa().getId())) {
+                    errors.reject(row, String.format("mpa with id %d not found", film.getMpa().getId()));
+                } else if (missingGenre.isPresent()) {
+                    errors.reject(row, String.format("genre with id %d not found", missingGenre.get()));
+                } else if (missingDirector.isPresent()) {
+                    errors.reject(row, String.format("director with id %d not found", missingDirector.get()));
+                } else {
+                    explicitIds.compareAndSet(false, film.getId() > 0);
+                    accepted.add(row);
+                }
+            }
+            return accepted;
+        }, importStorage::insertFilms);
+        if (explicitIds.get()) {
+            importStorage.restartFilmIds();
+        }
+        return result;
+    }
+
+    @Override
+    public ImportResult importUsers(InputStream in, ImportFormat format) throws IOException {
+        var explicitIds = new AtomicBoolean();
+        var result = importRows("users", in, format, User.class, (rows, errors) -> {
+            rows.forEach(row -> explicitIds.compareAndSet(false, row.value.getId() > 0));
+            return rows;
+        }, importStorage::insertUsers);
+        if (explicitIds.get()) {
+            importStorage.restartUserIds();
+        }
+        return result;
+    }
+
+    @Override
+    public ImportResult importFriends(InputStream in, ImportFormat format) throws IOException {
+        return importRows("friends", in, format, Friendship.class, (rows, errors) -> {
+            Set<Long> userIds = new HashSet<>();
+            for (var row : rows) {
+                userIds.add(row.value.getUserId());
+                userIds.add(row.value.getFriendId());
+            }
+            var knownUsers = importStorage.findUserIds(userIds);
+            List<Row<Friendship>> accepted = new ArrayList<>(rows.size());
+            for (var row : rows) {
+                var friendship = row.value;
+                if (!knownUsers.contains(friendship.getUserId())) {
+                    errors.reject(row, String.format("user with id %d not found", friendship.getUserId()));
+                } else if (!knownUsers.contains(friendship.getFriendId())) {
+                    errors.reject(row, String.format("user with id %d not found", friendship.getFriendId()));
+                } else if (friendship.getUserId() == friendship.getFriendId()) {
+                    errors.reject(row, String.format("user %d cannot be a friend of themselves",
+                            friendship.getUserId()));
+                } else {
+                    accepted.add(row);
+                }
+            }
+            return accepted;
+        }, importStorage::insertFriends);
+    }
+
+    @Override
+    public ImportResult importLikes(InputStream in, ImportFormat format) throws IOException {
+        return importRows("likes", in, format, FilmLike.class, (rows, errors) -> {
+            var knownFilms = importStorage.findFilmIds(rows.stream()
+                    .map(row -> row.value.getFilmId())
+                    .collect(Collectors.toSet()));
+            var knownUsers = importStorage.findUserIds(rows.stream()
+                    .map(row -> row.value.getUserId())
+                    .collect(Collectors.toSet()));
+            List<Row<FilmLike>> accepted = new ArrayList<>(rows.size());
+            for (var row : rows) {
+                var like = row.value;
+                if (!knownFilms.contains(like.getFilmId())) {
+                    errors.reject(row, String.format("film with id %d not found", like.getFilmId()));
+                } else if (!knownUsers.contains(like.getUserId())) {
+                    errors.reject(row, String.format("user with id %d not found", like.getUserId()));
+                } else {
+                    accepted.add(row);
+                }
+            }
+            return accepted;
+        }, importStorage::insertLikes);
+    }
+
+    private <T> ImportResult importRows(String name, InputStream in, ImportFormat format, Class<T> type,
+                                        Resolver<T> resolver, Consumer<List<T>> writer) throws IOException {
+        log.info("import {}: format {}", name, format);
+        var result = new ImportResult();
+        Errors<T> errors = (row, message) -> reject(result, row.line, message);
+        List<Row<T>> chunk = new ArrayList<>(batchSize);
+        try (var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            List<String> header = null;
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (format == ImportFormat.CSV && header == null) {
+                    header = parseCsvLine(line);
+                    continue;
+                }
+                result.setTotal(result.getTotal() + 1);
+                T value;
+                try {
+                    value = format == ImportFormat.CSV
+                            ? objectMapper.treeToValue(csvToJson(header, parseCsvLine(line)), type)
+                            : objectMapper.readValue(line, type);
+                } catch (JsonProcessingException | IllegalArgumentException e) {
+                    reject(result, lineNumber, e instanceof JsonProcessingException
+                            ? ((JsonProcessingException) e).getOriginalMessage()
+                            : e.getMessage());
+                    continue;
+                }
+                var violations = validator.validate(value);
+                if (!violations.isEmpty()) {
+                    reject(result, lineNumber, violations.stream()
+                            .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                            .sorted()
+                            .collect(Collectors.joining("; ")));
+                    continue;
+                }
+                chunk.add(new Row<>(lineNumber, value));
+                if (chunk.size() == batchSize) {
+                    write(resolver.resolve(chunk, errors), writer, result);
+                    chunk.clear();
+                }
+            }
+        }
+        write(resolver.resolve(chunk, errors), writer, result);
+        log.info("completion import {}: total {}, imported {}, failed {}",
+                name, result.getTotal(), result.getImported(), result.getFailed());
+        return result;
+    }
+
+    private <T> void write(List<Row<T>> rows, Consumer<List<T>> writer, ImportResult result) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            var values = rows.stream().map(row -> row.value).collect(Collectors.toList());
+            transactionTemplate.executeWithoutResult(status -> writer.accept(values));
+            result.setImported(result.getImported() + rows.size());
+        } catch (DataAccessException e) {
+            log.info("import chunk rejected, retrying row by row: {}", e.getMostSpecificCause().getMessage());
+            for (var row : rows) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> writer.accept(List.of(row.value)));
+                    result.setImported(result.getImported() + 1);
+                } catch (DataAccessException rowException) {
+                    reject(result, row.line, rowException.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    private void reject(ImportResult result, long line, String message) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < maxErrors) {
+            result.getErrors().add(new ImportError(line, message));
+        }
+    }
+
+    /**
+     * Maps a CSV record to the JSON shape of the model: mpa holds an id,
+     * genres and directors hold ids separated by ';'. Empty cells are skipped.
+     */
+    private ObjectNode csvToJson(List<String> header, List<String> cells) {
+        if (cells.size() > header.size()) {
+            throw new IllegalArgumentException(String.format("expected %d columns, got %d",
+                    header.size(), cells.size()));
+        }
+        var node = objectMapper.createObjectNode();
+        for (int i = 0; i < cells.size(); i++) {
+            var column = header.get(i);
+            var cell = cells.get(i);
+            if (cell.isEmpty()) {
+                continue;
+            }
+            switch (column) {
+                case "mpa":
+                    node.putObject(column).put("id", cell.trim());
+                    break;
+                case "genres":
+                case "directors":
+                    var array = node.putArray(column);
+                    for (var id : cell.split(";")) {
+                        if (!id.isBlank()) {
+                            array.addObject().put("id", id.trim());
+                        }
+                    }
+                    break;
+                default:
+                    node.put(column, cell);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Splits one CSV line, fields may be quoted with '"' and quotes inside them doubled.
+     */
+    private static List<String> parseCsvLine(String line) {
+        List<String> cells = new ArrayList<>();
+        var cell = new StringBuilder();
+        var quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            var c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    cell.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    private static class Row<T> {
+        private final long line;
+        private final T value;
+
+        Row(long line, T value) {
+            this.line = line;
+            this.value = value;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Errors<T> {
+        void reject(Row<T> row, String message);
+    }
+
+    /**
+     * Checks the references of a chunk and returns the rows that can be written.
+     */
+    @FunctionalInterface
+    private interface Resolver<T> {
+        List<Row<T>> resolve(List<Row<T>> rows, Errors<T> errors);
+    }
+}
@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.service.impl;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.EventType;
@@ -16,11 +17,14 @@ import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.function.BooleanSupplier;
 
 @Slf4j
 @Service
 @AllArgsConstructor
 public class ReviewServiceImpl implements ReviewService {
+    private static final long MAX_PAGE_SIZE = 1000;
+
     private final ReviewStorage reviewStorage;
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
@@ -98,70 +102,72 @@ public class ReviewServiceImpl implements ReviewService {
     public Collection<Review> getAll(Long filmId, long count) {
         if (filmId == null) {
             log.info("film is not indicated");
-            return reviewStorage.getAll(count);
+            return reviewStorage.getAll(Math.min(count, MAX_PAGE_SIZE));
         }
         log.info("film indicated, filmId=[{}]", filmId);
-        return reviewStorage.getFilmReviews(filmId, count);
+        return reviewStorage.getFilmReviews(filmId, Math.min(count, MAX_PAGE_SIZE));
+    }
+
+    @Override
+    public Collection<Review> getAll(Long filmId, Long afterId, long offset, long count) {
+        log.info("reviews page, filmId=[{}], afterId=[{}], offset=[{}]", filmId, afterId, offset);
+        return reviewStorage.getPage(filmId, afterId, offset, Math.min(count, MAX_PAGE_SIZE));
     }
 
     @Override
     public void addLike(long reviewId, long userId) {
-        log.info("is review[id={}] exists check", reviewId);
-        if (!reviewStorage.isReviewExists(reviewId)) {
-            throw new NotFoundException(String.format("review with id == %d not found", reviewId));
-        }
-        log.info("review[id={}] exists", reviewId);
-        if (!isUserExists(userId)) {
-            throw new NotFoundException(String.format("user with id == %d not found", userId));
-        }
-        log.info("user[id={}] exists", userId);
-        reviewStorage.addLike(reviewId, userId);
-        log.info("like on review[id={}] from user[id={}] deleted", reviewId, userId);
+        var changed = vote(() -> reviewStorage.addLike(reviewId, userId), reviewId, userId);
+        log.info("like on review[id={}] from user[id={}] added: {}", reviewId, userId, changed);
     }
 
     @Override
     public void addDislike(long reviewId, long userId) {
-        log.info("is review[id={}] exists check", reviewId);
-        if (!reviewStorage.isReviewExists(reviewId)) {
-            throw new NotFoundException(String.format("review with id == %d not found", reviewId));
-        }
-        log.info("review[id={}] exists", reviewId);
-        if (!isUserExists(userId)) {
-            throw new NotFoundException(String.format("user with id == %d not found", userId));
-        }
-        log.info("user[id={}] exists", userId);
-        reviewStorage.addDislike(reviewId, userId);
-        log.info("dislike on review[id={}] from user[id={}] deleted", reviewId, userId);
+        var changed = vote(() -> reviewStorage.addDislike(reviewId, userId), reviewId, userId);
+        log.info("dislike on review[id={}] from user[id={}] added: {}", reviewId, userId, changed);
     }
 
     @Override
     public void deleteLike(long reviewId, long userId) {
-        log.info("is review[id={}] exists check", reviewId);
-        if (!reviewStorage.isReviewExists(reviewId)) {
-            throw new NotFoundException(String.format("review with id == %d not found", reviewId));
-        }
-        log.info("review[id={}] exists", reviewId);
-        if (!isUserExists(userId)) {
-            throw new NotFoundException(String.format("user with id == %d not found", userId));
-        }
-        log.info("user[id={}] exists", userId);
-        reviewStorage.deleteLike(reviewId, userId);
-        log.info("like on review[id={}] from user[id={}] deleted", reviewId, userId);
+        var changed = deleteVote(() -> reviewStorage.deleteLike(reviewId, userId), reviewId, userId);
+        log.info("like on review[id={}] from user[id={}] deleted: {}", reviewId, userId, changed);
     }
 
     @Override
     public void deleteDislike(long reviewId, long userId) {
-        log.info("is review[id={}] exists check", reviewId);
+        var changed = deleteVote(() -> reviewStorage.deleteDislike(reviewId, userId), reviewId, userId);
+        log.info("dislike on review[id={}] from user[id={}] deleted: {}", reviewId, userId, changed);
+    }
+
+    /**
+     * Votes in one storage call, the review and the user are only looked up when the vote's foreign keys fail.
+     */
+    private boolean vote(BooleanSupplier vote, long reviewId, long userId) {
+        try {
+            return vote.getAsBoolean();
+        } catch (DataIntegrityViolationException e) {
+            checkVoteTarget(reviewId, userId);
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes a vote in one storage call, the review and the user are only looked up when there was no such vote.
+     */
+    private boolean deleteVote(BooleanSupplier vote, long reviewId, long userId) {
+        if (vote.getAsBoolean()) {
+            return true;
+        }
+        checkVoteTarget(reviewId, userId);
+        return false;
+    }
+
+    private void checkVoteTarget(long reviewId, long userId) {
         if (!reviewStorage.isReviewExists(reviewId)) {
             throw new NotFoundException(String.format("review with id == %d not found", reviewId));
         }
-        log.info("review[id={}] exists", reviewId);
         if (!isUserExists(userId)) {
             throw new NotFoundException(String.format("user with id == %d not found", userId));
         }
-        log.info("user[id={}] exists", userId);
-        reviewStorage.deleteDislike(reviewId, userId);
-        log.info("dislike on review[id={}] from user[id={}] deleted", reviewId, userId);
     }
 
     private boolean isFilmExists(long id) {
@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.service.impl;
 import lombok.RequiredArgsConstructor;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.EventType;
 import ru.yandex.practicum.filmorate.model.Feed;
@@ -15,7 +16,10 @@ import ru.yandex.practicum.filmorate.storage.UserStorage;
 import javax.validation.ValidationException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -41,6 +45,11 @@ public class UserServiceImpl implements UserService {
         return new ArrayList<>(userStorage.findAll());
     }
 
+    @Override
+    public List<User> getUsers(List<Long> ids) {
+        return userStorage.findByIds(new LinkedHashSet<>(ids));
+    }
+
     @Override
     public User getById(Long id) {
         return userStorage.findById(id)
@@ -50,6 +59,7 @@ public class UserServiceImpl implements UserService {
     @Override
     public void delete(Long id) {
         userStorage.delete(id);
+        feedStorage.deleteTimeline(id);
     }
 
     @Override
@@ -62,6 +72,7 @@ public class UserServiceImpl implements UserService {
         } catch (DataIntegrityViolationException e) {
             throw new NotFoundException("user or friend not found");
         }
+        feedStorage.addFriendToTimeline(id, friendId);
         feedStorage.recordEvent(Feed.builder()
                 .timestamp(new Date().getTime())
                 .userId(id)
@@ -71,6 +82,38 @@ public class UserServiceImpl implements UserService {
                 .build());
     }
 
+    /**
+     * Checks the user and every friend with one query, then stores the friendships
+     * and their feed events in one transaction.
+     */
+    @Override
+    @Transactional
+    public void addFriends(Long id, List<Long> friendIds) {
+        if (friendIds.contains(id)) {
+            throw new ValidationException("POST friends: friendIds contain id");
+        }
+        Set<Long> friends = new LinkedHashSet<>(friendIds);
+        Set<Long> missing = new LinkedHashSet<>(friends);
+        missing.add(id);
+        missing.removeAll(userStorage.findExistingIds(missing));
+        if (missing.contains(id)) {
+            throw new NotFoundException(String.format("user with id == %d not found", id));
+        }
+        if (!missing.isEmpty()) {
+            throw new NotFoundException(String.format("POST friends: friends %s not found", missing));
+        }
+        userStorage.addAllFriends(id, friends);
+        friends.forEach(friendId -> feedStorage.addFriendToTimeline(id, friendId));
+        feedStorage.recordEvents(friends.stream()
+                .map(friendId -> Feed.builder()
+                        .userId(id)
+                        .eventType(EventType.FRIEND)
+                        .operation(Operation.ADD)
+                        .entityId(friendId)
+                        .build())
+                .collect(Collectors.toList()));
+    }
+
     @Override
     public void deleteFriends(Long id, Long friendId) {
         if (id.equals(friendId)) {
@@ -83,6 +126,7 @@ public class UserServiceImpl implements UserService {
             throw new NotFoundException(String.format("friend with id == %d not found", id));
         }
         userStorage.deleteFriends(id, friendId);
+        feedStorage.removeFriendFromTimeline(id, friendId);
         feedStorage.recordEvent(Feed.builder()
                 .timestamp(new Date().getTime())
                 .userId(id)
@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.function.Consumer;
+
+/**
+ * Full-table dumps read through open JDBC cursors, one row at a time.
+ */
+public interface ExportStorage {
+
+    void exportFilms(Consumer<Film> consumer);
+
+    void exportUsers(Consumer<User> consumer);
+
+    void exportLikes(Consumer<FilmLike> consumer);
+
+    void exportFeed(Consumer<Feed> consumer);
+}
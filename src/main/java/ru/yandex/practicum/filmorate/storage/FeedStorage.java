@@ -7,8 +7,28 @@ import java.util.List;
 public interface FeedStorage {
     void recordEvent(Feed feed);
 
+    /**
+     * Stores the events in the given order with multi-row inserts.
+     */
+    void recordEvents(List<Feed> feeds);
+
     List<Feed> getFeed(Long userId);
 
+    List<Feed> getFeed(Long userId, long afterEventId, int limit);
+
+    /**
+     * Returns the latest limit events of the user, oldest first.
+     */
+    List<Feed> getLatestFeed(Long userId, int limit);
+
+    List<Feed> getFriendFeed(Long userId, int limit);
+
+    void addFriendToTimeline(Long userId, Long friendId);
+
+    void removeFriendFromTimeline(Long userId, Long friendId);
+
+    void deleteTimeline(Long userId);
+
     Long getEventTypeId(String eventType);
 
     Long getOperationId(String operation);
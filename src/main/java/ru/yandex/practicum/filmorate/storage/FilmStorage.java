@@ -1,9 +1,13 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
@@ -13,19 +17,56 @@ public interface FilmStorage {
 
     List<Film> findAll();
 
+    /**
+     * Keyset page of films ordered by id.
+     *
+     * @param afterId id of the last film of the previous page, 0 for the first page
+     */
+    List<Film> findPage(long afterId, int limit);
+
+    /**
+     * Passes every film, ordered by id, to the consumer without materializing the whole catalogue.
+     */
+    void streamAll(Consumer<Film> consumer);
+
     Optional<Film> findById(Long id);
 
+    /**
+     * Films with the given ids in the given order, unknown ids are skipped.
+     */
+    List<Film> findByIds(Collection<Long> ids);
+
+    /**
+     * The given ids that belong to existing films.
+     */
+    Set<Long> findExistingIds(Collection<Long> ids);
+
     void delete(Long id);
 
     void putLike(Long id, Long userId);
 
+    /**
+     * Stores the likes that are not stored yet in one batch, films and users must exist.
+     */
+    void putLikes(List<FilmLike> likes);
+
     void deleteLike(Long id, Long userId);
 
+    /**
+     * Recomputes film.like_count from film_likes for films whose counter drifted.
+     *
+     * @return number of repaired films
+     */
+    int repairLikeCounts();
+
     List<Film> getPopular(int count, Integer genreId, Integer year);
 
     List<Film> getByDirectorId(Long id, String sortBy);
 
-    List<Film> getFilmRecommendation(Long userId, Long userWithSimilarLikesId);
+    /**
+     * Films liked by the users with the most similar likes and not liked by the user, best match first.
+     */
+    List<Film> getRecommendations(Long userId);
 
     List<Film> findByTitle(String query);
 
@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Batched writes used by bulk imports, each call is one transaction.
+ */
+public interface ImportStorage {
+
+    Set<Integer> findMpaIds(Collection<Integer> ids);
+
+    Set<Integer> findGenreIds(Collection<Integer> ids);
+
+    Set<Long> findDirectorIds(Collection<Long> ids);
+
+    Set<Long> findFilmIds(Collection<Long> ids);
+
+    Set<Long> findUserIds(Collection<Long> ids);
+
+    /**
+     * Inserts films with their genres and directors. Films with a positive id keep it,
+     * the rest get generated ids, returned in the order of the films.
+     */
+    List<Long> insertFilms(List<Film> films);
+
+    /**
+     * Same as {@link #insertFilms(List)} for users.
+     */
+    List<Long> insertUsers(List<User> users);
+
+    void insertFriends(List<Friendship> friendships);
+
+    /**
+     * Inserts likes that do not exist yet and returns how many were added.
+     */
+    int insertLikes(List<FilmLike> likes);
+
+    /**
+     * Moves the film id generator past ids inserted explicitly.
+     */
+    void restartFilmIds();
+
+    void restartUserIds();
+}
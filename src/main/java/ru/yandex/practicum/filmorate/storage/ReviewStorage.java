@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.storage;
 import ru.yandex.practicum.filmorate.model.Review;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface ReviewStorage {
     long addAndReturnId(Review review);
@@ -17,13 +18,25 @@ public interface ReviewStorage {
 
     Collection<Review> getFilmReviews(long filmId, long count);
 
-    void addLike(long reviewId, long userId);
+    /**
+     * Returns reviews, of a film if filmId is set, by useful score, starting after the review afterId
+     * if it is set and then skipping offset reviews.
+     */
+    List<Review> getPage(Long filmId, Long afterId, long offset, long count);
 
-    void addDislike(long reviewId, long userId);
+    /**
+     * Sets the user's vote on the review, returns false if it was already set.
+     */
+    boolean addLike(long reviewId, long userId);
 
-    public void deleteLike(long reviewId, long userId);
+    boolean addDislike(long reviewId, long userId);
 
-    public void deleteDislike(long reviewId, long userId);
+    /**
+     * Removes the user's like of the review, returns false if there was none.
+     */
+    boolean deleteLike(long reviewId, long userId);
+
+    boolean deleteDislike(long reviewId, long userId);
 
     boolean isReviewExists(long id);
 }
\ No newline at end of file
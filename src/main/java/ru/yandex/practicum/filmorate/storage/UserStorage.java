@@ -2,8 +2,10 @@ package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public interface UserStorage {
 
@@ -15,15 +17,25 @@ public interface UserStorage {
 
     Optional<User> findById(Long id);
 
+    /**
+     * Users with the given ids in the given order, unknown ids are skipped.
+     */
+    List<User> findByIds(Collection<Long> ids);
+
+    /**
+     * The given ids that belong to existing users.
+     */
+    Set<Long> findExistingIds(Collection<Long> ids);
+
     void delete(Long id);
 
     void addFriends(Long id, Long friendId);
 
+    void addAllFriends(Long id, Collection<Long> friendIds);
+
     void deleteFriends(Long id, Long friendId);
 
     List<User> getFriends(Long id);
 
     List<User> getCommonFriends(Long id, Long otherId);
-
-    Long findUserWithSimilarLikes(Long userId);
 }
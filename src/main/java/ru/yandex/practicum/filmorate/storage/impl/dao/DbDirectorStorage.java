@@ -9,6 +9,9 @@ import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.index.AfterCommit;
+import ru.yandex.practicum.filmorate.storage.index.FilmCache;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -21,6 +24,8 @@ import java.util.Optional;
 public class DbDirectorStorage implements DirectorStorage {
 
     private final NamedParameterJdbcOperations jdbcTemplate;
+    private final FilmSearchIndex searchIndex;
+    private final FilmCache filmCache;
 
     @Override
     public Director create(Director director) {
@@ -32,6 +37,7 @@ public class DbDirectorStorage implements DirectorStorage {
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbcTemplate.update(sqlQuery, namedParameters, keyHolder);
         director.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
+        indexDirector(director);
         return director;
     }
 
@@ -50,6 +56,8 @@ public class DbDirectorStorage implements DirectorStorage {
         if (value < 1) {
             return Optional.empty();
         }
+        indexDirector(director);
+        filmCache.invalidateAll(searchIndex.findByDirector(director.getId()));
         return Optional.of(director);
     }
 
@@ -68,7 +76,16 @@ public class DbDirectorStorage implements DirectorStorage {
     public void delete(Long id) {
         SqlParameterSource namedParameters = new MapSqlParameterSource()
                 .addValue("id", id);
-        jdbcTemplate.update("DELETE FROM director WHERE id = :id;", namedParameters);
+        if (jdbcTemplate.update("DELETE FROM director WHERE id = :id;", namedParameters) > 0) {
+            filmCache.invalidateAll(searchIndex.findByDirector(id));
+            AfterCommit.run(() -> searchIndex.removeDirector(id));
+        }
+    }
+
+    private void indexDirector(Director director) {
+        long id = director.getId();
+        var name = director.getName();
+        AfterCommit.run(() -> searchIndex.putDirector(id, name));
     }
 
     private Optional<Director> makeDirector(ResultSet resultSet) throws SQLException {
@@ -0,0 +1,208 @@
+package ru.yandex.practicum.filmorate.storage.impl.dao;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.ExportStorage;
+import ru.yandex.practicum.filmorate.storage.index.ReferenceDataCache;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Uses its own JdbcTemplate so the export fetch size does not affect regular queries.
+ * Films are assembled by merging the film, film_genre and film_director cursors,
+ * all ordered by film id, so no per-film or per-chunk queries are issued. The three cursors are
+ * read in one read-only repeatable read transaction, so they share a connection and a snapshot.
+ */
+@Repository("exportDbStorage")
+public class DbExportStorage implements ExportStorage {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ReferenceDataCache referenceData;
+
+    public DbExportStorage(DataSource dataSource, PlatformTransactionManager transactionManager,
+                           ReferenceDataCache referenceData,
+                           @Value("${filmorate.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.referenceData = referenceData;
+    }
+
+    @Override
+    public void exportFilms(Consumer<Film> consumer) {
+        String sqlReadFilmQuery = "SELECT f.id,\n" +
+                "    f.name AS film_name,\n" +
+                "    f.description,\n" +
+                "    f.release_date,\n" +
+                "    f.duration,\n" +
+                "    f.rating_id\n" +
+                "FROM film AS f\n" +
+                "ORDER BY f.id;";
+        String sqlReadGenreQuery = "SELECT film_id,\n" +
+                "    genre_id\n" +
+                "FROM film_genre\n" +
+                "ORDER BY film_id, id;";
+        String sqlReadDirectorQuery = "SELECT fd.film_id,\n" +
+                "    fd.director_id,\n" +
+                "    d.name\n" +
+                "FROM film_director AS fd\n" +
+                "JOIN director AS d ON fd.director_id = d.id\n" +
+                "ORDER BY fd.film_id, fd.id;";
+        transactionTemplate.executeWithoutResult(status -> {
+            try (var films = jdbcTemplate.queryForStream(sqlReadFilmQuery, this::makeFilm);
+                 var genres = jdbcTemplate.queryForStream(sqlReadGenreQuery, this::makeFilmGenre);
+                 var directors = jdbcTemplate.queryForStream(sqlReadDirectorQuery, this::makeFilmDirector)) {
+                var genreCursor = new Cursor<>(genres.iterator());
+                var directorCursor = new Cursor<>(directors.iterator());
+                films.forEach(film -> {
+                    for (var genre : genreCursor.takeFor(film.getId())) {
+                        film.addGenre(genre);
+                    }
+                    for (var director : directorCursor.takeFor(film.getId())) {
+                        film.addDirector(director);
+                    }
+                    consumer.accept(film);
+                });
+            }
+        });
+    }
+
+    @Override
+    public void exportUsers(Consumer<User> consumer) {
+        try (var users = jdbcTemplate.queryForStream("SELECT * FROM users ORDER BY id;", this::makeUser)) {
+            users.forEach(consumer);
+        }
+    }
+
+    @Override
+    public void exportLikes(Consumer<FilmLike> consumer) {
+        try (var likes = jdbcTemplate.queryForStream("SELECT film_id, user_id FROM film_likes;", this::makeLike)) {
+            likes.forEach(consumer);
+        }
+    }
+
+    @Override
+    public void exportFeed(Consumer<Feed> consumer) {
+        String sqlQuery =
+                "SELECT timestamp,\n" +
+                "    user_id,\n" +
+                "    event_type,\n" +
+                "    operation,\n" +
+                "    event_id,\n" +
+                "    entity_id\n" +
+                "FROM feed\n" +
+                "ORDER BY event_id;";
+        try (var feed = jdbcTemplate.queryForStream(sqlQuery, this::makeFeed)) {
+            feed.forEach(consumer);
+        }
+    }
+
+    private Film makeFilm(ResultSet resultSet, int rowNum) throws SQLException {
+        var releaseDate = resultSet.getDate("release_date");
+        var ratingId = resultSet.getInt("rating_id");
+        var rating = ratingId < 1 ? null : referenceData.getMpa(ratingId);
+        return new Film(resultSet.getLong("id"),
+                resultSet.getString("film_name"),
+                resultSet.getString("description"),
+                releaseDate == null ? null : releaseDate.toLocalDate(),
+                resultSet.getInt("duration"),
+                rating,
+                new LinkedHashSet<>(),
+                new LinkedHashSet<>()
+        );
+    }
+
+    private Link<Genre> makeFilmGenre(ResultSet resultSet, int rowNum) throws SQLException {
+        return new Link<>(resultSet.getLong("film_id"),
+                referenceData.getGenre(resultSet.getInt("genre_id")));
+    }
+
+    private Link<Director> makeFilmDirector(ResultSet resultSet, int rowNum) throws SQLException {
+        return new Link<>(resultSet.getLong("film_id"),
+                new Director(resultSet.getLong("director_id"), resultSet.getString("name")));
+    }
+
+    private User makeUser(ResultSet resultSet, int rowNum) throws SQLException {
+        var birthday = resultSet.getDate("birthday");
+        return new User(resultSet.getLong("id"),
+                resultSet.getString("email"),
+                resultSet.getString("login"),
+                resultSet.getString("name"),
+                birthday == null ? null : birthday.toLocalDate(),
+                new HashSet<>()
+        );
+    }
+
+    private FilmLike makeLike(ResultSet resultSet, int rowNum) throws SQLException {
+        return new FilmLike(resultSet.getLong("film_id"), resultSet.getLong("user_id"));
+    }
+
+    private Feed makeFeed(ResultSet resultSet, int rowNum) throws SQLException {
+        return Feed.builder()
+                .timestamp(resultSet.getLong("timestamp"))
+                .userId(resultSet.getLong("user_id"))
+                .eventType(referenceData.getEventType(resultSet.getLong("event_type")))
+                .operation(referenceData.getOperation(resultSet.getLong("operation")))
+                .eventId(resultSet.getLong("event_id"))
+                .entityId(resultSet.getLong("entity_id"))
+                .build();
+    }
+
+    private static class Link<T> {
+        private final long filmId;
+        private final T value;
+
+        Link(long filmId, T value) {
+            this.filmId = filmId;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Look-ahead over a cursor ordered by film id.
+     */
+    private static class Cursor<T> {
+        private final Iterator<Link<T>> iterator;
+        private Link<T> next;
+
+        Cursor(Iterator<Link<T>> iterator) {
+            this.iterator = iterator;
+            this.next = iterator.hasNext() ? iterator.next() : null;
+        }
+
+        /**
+         * Skips rows of films before the given one and returns the rows of the given film.
+         */
+        List<T> takeFor(long filmId) {
+            List<T> values = new ArrayList<>();
+            while (next != null && next.filmId <= filmId) {
+                if (next.filmId == filmId) {
+                    values.add(next.value);
+                }
+                next = iterator.hasNext() ? iterator.next() : null;
+            }
+            return values;
+        }
+    }
+}
@@ -1,100 +1,209 @@
 package ru.yandex.practicum.filmorate.storage.impl.dao;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
-import ru.yandex.practicum.filmorate.model.EventType;
 import ru.yandex.practicum.filmorate.model.Feed;
-import ru.yandex.practicum.filmorate.model.Operation;
 import ru.yandex.practicum.filmorate.storage.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.index.AfterCommit;
+import ru.yandex.practicum.filmorate.storage.index.FeedRecorder;
+import ru.yandex.practicum.filmorate.storage.index.FriendTimeline;
+import ru.yandex.practicum.filmorate.storage.index.RecentFeedCache;
+import ru.yandex.practicum.filmorate.storage.index.ReferenceDataCache;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.TreeMap;
 
 @Repository("feedDbStorage")
 @RequiredArgsConstructor
 public class DbFeedStorage implements FeedStorage {
 
     private final NamedParameterJdbcOperations jdbcTemplate;
+    private final ReferenceDataCache referenceData;
+    private final FeedRecorder feedRecorder;
+    private final RecentFeedCache recentFeed;
+    private final FriendTimeline friendTimeline;
 
     @Override
     public void recordEvent(Feed feed) {
-        Long eventTypeId = getEventTypeId(feed.getEventType().name());
-        Long operationId = getOperationId(feed.getOperation().name());
-        String sqlQuery = "INSERT INTO feed(timestamp, user_id, event_type, operation, entity_id) " +
-                "VALUES (:timestamp, :user_id, :event_type, :operation, :entity_id);";
-        SqlParameterSource namedParameters = new MapSqlParameterSource()
-                .addValue("timestamp", new Date().getTime())
-                .addValue("user_id", feed.getUserId())
-                .addValue("event_type", eventTypeId)
-                .addValue("operation", operationId)
-                .addValue("entity_id", feed.getEntityId());
-        jdbcTemplate.update(sqlQuery, namedParameters);
+        feed.setTimestamp(new Date().getTime());
+        feedRecorder.record(feed,
+                getEventTypeId(feed.getEventType().name()),
+                getOperationId(feed.getOperation().name()));
+    }
+
+    @Override
+    public void recordEvents(List<Feed> feeds) {
+        var timestamp = new Date().getTime();
+        feeds.forEach(feed -> feed.setTimestamp(timestamp));
+        feedRecorder.recordAll(feeds,
+                feed -> getEventTypeId(feed.getEventType().name()),
+                feed -> getOperationId(feed.getOperation().name()));
     }
 
     @Override
     public List<Feed> getFeed(Long userId) {
+        return getFeed(userId, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Feed> getFeed(Long userId, long afterEventId, int limit) {
+        feedRecorder.flush();
+        var recent = recentFeed.find(userId, afterEventId, limit, this::findLatest);
+        if (recent.isPresent()) {
+            return recent.get();
+        }
         SqlParameterSource namedParameters = new MapSqlParameterSource()
-                .addValue("id", userId);
+                .addValue("id", userId)
+                .addValue("after_event_id", afterEventId)
+                .addValue("limit", limit);
         String sqlQuery =
-                "SELECT f.timestamp,\n" +
-                        "    f.user_id,\n" +
-                        "    et.name AS even_type_name,\n" +
-                        "    o.name AS operation_name,\n" +
-                        "    f.event_id,\n" +
-                        "    f.entity_id\n" +
-                        "FROM feed AS f\n" +
-                        "INNER JOIN event_type et ON f.event_type = et.id\n" +
-                        "INNER JOIN operation o ON f.operation = o.id\n" +
-                        "WHERE f.user_id = :id\n" +
-                        ";";
+                "SELECT timestamp,\n" +
+                        "    user_id,\n" +
+                        "    event_type,\n" +
+                        "    operation,\n" +
+                        "    event_id,\n" +
+                        "    entity_id\n" +
+                        "FROM feed\n" +
+                        "WHERE user_id = :id AND event_id > :after_event_id\n" +
+                        "ORDER BY event_id\n" +
+                        "LIMIT :limit;";
         return jdbcTemplate.query(sqlQuery, namedParameters, this::makeFeeds);
     }
 
     @Override
-    public Long getEventTypeId(String eventType) {
-        SqlParameterSource namedParameters = new MapSqlParameterSource().addValue("type", eventType);
-        String sqlReadQuery = "SELECT id FROM event_type WHERE name = :type";
-        try {
-            return jdbcTemplate.queryForObject(sqlReadQuery, namedParameters, this::makeEventTypeId);
-        } catch (DataAccessException e) {
-            throw new NotFoundException(String.format("event type : %s , not found", eventType));
+    public List<Feed> getLatestFeed(Long userId, int limit) {
+        feedRecorder.flush();
+        return recentFeed.findLatest(userId, limit, this::findLatest)
+                .orElseGet(() -> findLatest(userId, limit));
+    }
+
+    @Override
+    public List<Feed> getFriendFeed(Long userId, int limit) {
+        feedRecorder.flush();
+        var eventIds = friendTimeline.find(userId, limit, this::findLatestOfFriends);
+        TreeMap<Long, Feed> events = new TreeMap<>();
+        if (!eventIds.isEmpty()) {
+            SqlParameterSource namedParameters = new MapSqlParameterSource()
+                    .addValue("ids", eventIds);
+            String sqlQuery =
+                    "SELECT timestamp,\n" +
+                            "    user_id,\n" +
+                            "    event_type,\n" +
+                            "    operation,\n" +
+                            "    event_id,\n" +
+                            "    entity_id\n" +
+                            "FROM feed\n" +
+                            "WHERE event_id IN (:ids);";
+            jdbcTemplate.query(sqlQuery, namedParameters, this::makeFeeds)
+                    .forEach(feed -> events.put(feed.getEventId(), feed));
+        }
+        var celebrities = friendTimeline.getCelebrityFriends(userId);
+        if (!celebrities.isEmpty()) {
+            SqlParameterSource namedParameters = new MapSqlParameterSource()
+                    .addValue("ids", celebrities)
+                    .addValue("limit", limit);
+            String sqlQuery =
+                    "SELECT timestamp,\n" +
+                            "    user_id,\n" +
+                            "    event_type,\n" +
+                            "    operation,\n" +
+                            "    event_id,\n" +
+                            "    entity_id\n" +
+                            "FROM feed\n" +
+                            "WHERE user_id IN (:ids)\n" +
+                            "ORDER BY event_id DESC\n" +
+                            "LIMIT :limit;";
+            jdbcTemplate.query(sqlQuery, namedParameters, this::makeFeeds)
+                    .forEach(feed -> events.put(feed.getEventId(), feed));
+        }
+        while (events.size() > limit) {
+            events.pollFirstEntry();
         }
+        return new ArrayList<>(events.values());
+    }
+
+    @Override
+    public void addFriendToTimeline(Long userId, Long friendId) {
+        AfterCommit.run(() -> friendTimeline.addFriend(userId, friendId, this::findLatest));
+    }
+
+    @Override
+    public void removeFriendFromTimeline(Long userId, Long friendId) {
+        AfterCommit.run(() -> friendTimeline.removeFriend(userId, friendId));
+    }
+
+    @Override
+    public void deleteTimeline(Long userId) {
+        AfterCommit.run(() -> friendTimeline.removeUser(userId));
+    }
+
+    @Override
+    public Long getEventTypeId(String eventType) {
+        return referenceData.findEventTypeId(eventType)
+                .orElseThrow(() -> new NotFoundException(String.format("event type : %s , not found", eventType)));
     }
 
     @Override
     public Long getOperationId(String operation) {
-        SqlParameterSource namedParameters = new MapSqlParameterSource().addValue("operation", operation);
-        String sqlReadQuery = "SELECT id FROM operation WHERE name = :operation";
-        try {
-            return jdbcTemplate.queryForObject(sqlReadQuery, namedParameters, this::makeOperationId);
-        } catch (DataAccessException e) {
-            throw new NotFoundException(String.format("operation : %s , not found", operation));
-        }
+        return referenceData.findOperationId(operation)
+                .orElseThrow(() -> new NotFoundException(String.format("operation : %s , not found", operation)));
+    }
+
+    private List<Feed> findLatest(Long userId, Integer count) {
+        SqlParameterSource namedParameters = new MapSqlParameterSource()
+                .addValue("id", userId)
+                .addValue("count", count);
+        String sqlQuery =
+                "SELECT timestamp,\n" +
+                        "    user_id,\n" +
+                        "    event_type,\n" +
+                        "    operation,\n" +
+                        "    event_id,\n" +
+                        "    entity_id\n" +
+                        "FROM feed\n" +
+                        "WHERE user_id = :id\n" +
+                        "ORDER BY event_id DESC\n" +
+                        "LIMIT :count;";
+        var latest = jdbcTemplate.query(sqlQuery, namedParameters, this::makeFeeds);
+        Collections.reverse(latest);
+        return latest;
+    }
+
+    private List<Feed> findLatestOfFriends(Long userId, Integer count) {
+        SqlParameterSource namedParameters = new MapSqlParameterSource()
+                .addValue("id", userId)
+                .addValue("count", count);
+        String sqlQuery =
+                "SELECT timestamp,\n" +
+                        "    user_id,\n" +
+                        "    event_type,\n" +
+                        "    operation,\n" +
+                        "    event_id,\n" +
+                        "    entity_id\n" +
+                        "FROM feed\n" +
+                        "WHERE user_id IN (SELECT friend_id FROM friend WHERE user_id = :id)\n" +
+                        "ORDER BY event_id DESC\n" +
+                        "LIMIT :count;";
+        return jdbcTemplate.query(sqlQuery, namedParameters, this::makeFeeds);
     }
 
     private Feed makeFeeds(ResultSet resultSet, int rowNum) throws SQLException {
         return Feed.builder()
                 .timestamp(resultSet.getLong("timestamp"))
                 .userId(resultSet.getLong("user_id"))
-                .eventType(EventType.valueOf(resultSet.getString("even_type_name")))
-                .operation(Operation.valueOf(resultSet.getString("operation_name")))
+                .eventType(referenceData.getEventType(resultSet.getLong("event_type")))
+                .operation(referenceData.getOperation(resultSet.getLong("operation")))
                 .eventId(resultSet.getLong("event_id"))
                 .entityId(resultSet.getLong("entity_id"))
                 .build();
     }
-
-    private Long makeEventTypeId(ResultSet resultSet, int rowNum) throws SQLException {
-        return resultSet.getLong("id");
-    }
-
-    private Long makeOperationId(ResultSet resultSet, int rowNum) throws SQLException {
-        return resultSet.getLong("id");
-    }
 }
@@ -1,8 +1,7 @@
 package ru.yandex.practicum.filmorate.storage.impl.dao;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
@@ -13,27 +12,54 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.index.AfterCommit;
+import ru.yandex.practicum.filmorate.storage.index.FilmCache;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikeBuffer;
+import ru.yandex.practicum.filmorate.storage.index.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.index.SocialIndex;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Repository("filmDbStorage")
 @RequiredArgsConstructor
 public class DbFilmStorage implements FilmStorage {
 
+    private static final int ID_CHUNK_SIZE = 1000;
+
+    private static final String FILM_SELECT = "SELECT f.id,\n" +
+            "    f.name AS film_name,\n" +
+            "    f.description,\n" +
+            "    f.release_date,\n" +
+            "    f.duration,\n" +
+            "    f.rating_id\n" +
+            "FROM film AS f\n";
+
     private final NamedParameterJdbcOperations jdbcTemplate;
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmSearchIndex searchIndex;
+    private final SocialIndex socialIndex;
+    private final ReferenceDataCache referenceData;
+    private final FilmCache filmCache;
+    private final LikeBuffer likeBuffer;
 
     @Override
     @Transactional
@@ -52,6 +78,7 @@ public class DbFilmStorage implements FilmStorage {
         film.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
         updateFilmGenre(film);
         updateFilmDirector(film);
+        indexFilm(film);
         return film;
     }
 
@@ -82,49 +109,64 @@ public class DbFilmStorage implements FilmStorage {
         updateFilmGenre(film);
         jdbcTemplate.update("DELETE FROM film_director WHERE film_id = :id", namedParameters);
         updateFilmDirector(film);
+        indexFilm(film);
+        filmCache.invalidate(film.getId());
         return Optional.of(film);
     }
 
     @Override
     public List<Film> findAll() {
-        String sqlReadFilmQuery = "SELECT f.id,\n" +
-                "       f.name AS film_name,\n" +
-                "       f.description,\n" +
-                "       f.release_date,\n" +
-                "       f.duration,\n" +
-                "       f.rating_id,\n" +
-                "       r.name AS rating_name,\n" +
-                "       ARRAY_AGG(fg.genre_id) AS film_genres_id,\n" +
-                "       ARRAY_AGG(g.name) AS film_genres_name,\n" +
-                "       ARRAY_AGG(fd.director_id) AS film_director_id,\n" +
-                "       ARRAY_AGG(d.name) AS film_director_name\n" +
-                "FROM film AS f\n" +
-                "LEFT JOIN rating AS r ON f.rating_id = r.id\n" +
-                "LEFT JOIN film_genre AS fg ON f.id = fg.film_id\n" +
-                "LEFT JOIN genre AS g ON fg.genre_id = g.id\n" +
-                "LEFT JOIN film_director AS fd ON f.id = fd.film_id\n" +
-                "LEFT JOIN director AS d ON fd.director_id = d.id\n" +
-                "GROUP BY f.id;";
-        return jdbcTemplate.query(sqlReadFilmQuery, this::makeAllFilms);
+        String sqlReadFilmQuery = FILM_SELECT +
+                "ORDER BY f.id;";
+        return hydrate(jdbcTemplate.query(sqlReadFilmQuery, this::makeFilms));
+    }
+
+    @Override
+    public List<Film> findPage(long afterId, int limit) {
+        String sqlReadFilmQuery = FILM_SELECT +
+                "WHERE f.id > :after_id\n" +
+                "ORDER BY f.id\n" +
+                "LIMIT :limit;";
+        SqlParameterSource namedParameters = new MapSqlParameterSource()
+                .addValue("after_id", afterId)
+                .addValue("limit", limit);
+        return hydrate(jdbcTemplate.query(sqlReadFilmQuery, namedParameters, this::makeFilms));
+    }
+
+    /**
+     * Reads the films page by page by id, so the cursor of a page is closed before its genres
+     * and directors are read and the stream never holds more than one connection.
+     */
+    @Override
+    public void streamAll(Consumer<Film> consumer) {
+        long afterId = 0;
+        List<Film> page;
+        do {
+            page = findPage(afterId, ID_CHUNK_SIZE);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == ID_CHUNK_SIZE);
     }
 
     @Override
     public Optional<Film> findById(Long id) {
+        return filmCache.get(id, this::loadById);
+    }
+
+    private Optional<Film> loadById(Long id) {
         String sqlReadFilmQuery = "SELECT f.id,\n" +
                 "       f.name AS film_name,\n" +
                 "       f.description,\n" +
                 "       f.release_date,\n" +
                 "       f.duration,\n" +
                 "       f.rating_id,\n" +
-                "       r.name AS rating_name,\n" +
                 "       ARRAY_AGG(fg.genre_id) AS film_genres_id,\n" +
-                "       ARRAY_AGG(g.name) AS film_genres_name,\n" +
                 "       ARRAY_AGG(fd.director_id) AS film_director_id,\n" +
                 "       ARRAY_AGG(d.name) AS film_director_name\n" +
                 "FROM film AS f\n" +
-                "LEFT JOIN rating AS r ON f.rating_id = r.id\n" +
                 "LEFT JOIN film_genre AS fg ON f.id = fg.film_id\n" +
-                "LEFT JOIN genre AS g ON fg.genre_id = g.id\n" +
                 "LEFT JOIN film_director AS fd ON f.id = fd.film_id\n" +
                 "LEFT JOIN director AS d ON fd.director_id = d.id\n" +
                 "WHERE f.id = :id\n" +
@@ -136,353 +178,249 @@ public class DbFilmStorage implements FilmStorage {
     @Override
     public void delete(Long id) {
         SqlParameterSource namedParameters = new MapSqlParameterSource().addValue("id", id);
-        jdbcTemplate.update("DELETE FROM film WHERE id = :id", namedParameters);
+        if (jdbcTemplate.update("DELETE FROM film WHERE id = :id", namedParameters) > 0) {
+            AfterCommit.run(() -> {
+                popularityIndex.remove(id);
+                searchIndex.removeFilm(id);
+                socialIndex.removeFilm(id);
+            });
+            filmCache.invalidate(id);
+        }
     }
 
     @Override
+    @Transactional
     public void putLike(Long filmId, Long userId) {
+        if (likeBuffer.isEnabled()) {
+            likeBuffer.like(filmId, userId);
+            return;
+        }
         SqlParameterSource namedParameters = new MapSqlParameterSource()
                 .addValue("film_id", filmId)
                 .addValue("user_id", userId);
-        jdbcTemplate.update("MERGE INTO film_likes(film_id, user_id) values (:film_id, :user_id)", namedParameters);
+        String sqlQuery = "INSERT INTO film_likes(film_id, user_id) " +
+                "SELECT :film_id, :user_id " +
+                "WHERE NOT EXISTS (" +
+                "    SELECT 1 FROM film_likes WHERE film_id = :film_id AND user_id = :user_id" +
+                ")";
+        int inserted;
+        try {
+            inserted = jdbcTemplate.update(sqlQuery, namedParameters);
+        } catch (DuplicateKeyException e) {
+            inserted = 0;
+        }
+        if (inserted > 0) {
+            jdbcTemplate.update("UPDATE film SET like_count = like_count + 1 WHERE id = :film_id", namedParameters);
+            var added = inserted;
+            AfterCommit.run(() -> {
+                popularityIndex.addLikes(filmId, added);
+                socialIndex.addLike(filmId, userId);
+            });
+        }
+    }
+
+    /**
+     * Writes the likes directly even with the like buffer on, after flushing it so the buffered
+     * operations are not applied over the batch.
+     */
+    @Override
+    @Transactional
+    public void putLikes(List<FilmLike> likes) {
+        if (likeBuffer.isEnabled()) {
+            likeBuffer.flush();
+        }
+        var inserted = jdbcTemplate.batchUpdate("INSERT INTO film_likes(film_id, user_id) " +
+                        "SELECT :film_id, :user_id WHERE NOT EXISTS " +
+                        "(SELECT 1 FROM film_likes WHERE film_id = :film_id AND user_id = :user_id)",
+                likes.stream()
+                        .map(like -> new MapSqlParameterSource()
+                                .addValue("film_id", like.getFilmId())
+                                .addValue("user_id", like.getUserId()))
+                        .toArray(SqlParameterSource[]::new));
+        Map<Long, Long> added = new HashMap<>();
+        List<FilmLike> stored = new ArrayList<>();
+        for (var i = 0; i < inserted.length; i++) {
+            if (inserted[i] > 0) {
+                added.merge(likes.get(i).getFilmId(), 1L, Long::sum);
+                stored.add(likes.get(i));
+            }
+        }
+        jdbcTemplate.batchUpdate("UPDATE film SET like_count = like_count + :delta WHERE id = :film_id",
+                added.entrySet().stream()
+                        .map(delta -> new MapSqlParameterSource()
+                                .addValue("film_id", delta.getKey())
+                                .addValue("delta", delta.getValue()))
+                        .toArray(SqlParameterSource[]::new));
+        AfterCommit.run(() -> {
+            added.forEach(popularityIndex::addLikes);
+            stored.forEach(like -> socialIndex.addLike(like.getFilmId(), like.getUserId()));
+        });
     }
 
     @Override
+    @Transactional
     public void deleteLike(Long filmId, Long userId) {
+        if (likeBuffer.isEnabled()) {
+            likeBuffer.unlike(filmId, userId);
+            return;
+        }
         SqlParameterSource namedParameters = new MapSqlParameterSource()
                 .addValue("film_id", filmId)
                 .addValue("user_id", userId);
-        jdbcTemplate.update("DELETE FROM film_likes WHERE film_id = :film_id AND user_id = :user_id", namedParameters);
+        var deleted = jdbcTemplate.update(
+                "DELETE FROM film_likes WHERE film_id = :film_id AND user_id = :user_id", namedParameters);
+        if (deleted > 0) {
+            jdbcTemplate.update("UPDATE film SET like_count = like_count - 1 WHERE id = :film_id", namedParameters);
+            AfterCommit.run(() -> {
+                popularityIndex.addLikes(filmId, -deleted);
+                socialIndex.removeLike(filmId, userId);
+            });
+        }
+    }
+
+    @Override
+    @Transactional
+    public int repairLikeCounts() {
+        if (likeBuffer.isEnabled()) {
+            likeBuffer.flush();
+        }
+        String sqlQuery = "UPDATE film AS f " +
+                "SET like_count = (SELECT COUNT(*) FROM film_likes AS l WHERE l.film_id = f.id) " +
+                "WHERE like_count <> (SELECT COUNT(*) FROM film_likes AS l WHERE l.film_id = f.id)";
+        var repaired = jdbcTemplate.update(sqlQuery, new MapSqlParameterSource());
+        if (repaired > 0) {
+            AfterCommit.run(popularityIndex::rebuild);
+        }
+        return repaired;
     }
 
     @Override
     public List<Film> getPopular(int count, Integer genreId, Integer year) {
-        var where = getWhere(genreId, year);
-        String sqlReadFilmQuery = "SELECT f.id,\n" +
-                "    f.name AS film_name,\n" +
-                "    f.description,\n" +
-                "    f.release_date,\n" +
-                "    f.duration,\n" +
-                "    f.rating_id,\n" +
-                "    r.name AS rating_name\n" +
-                "FROM film AS f\n" +
-                "LEFT JOIN rating AS r ON f.rating_id = r.id\n" +
-                "LEFT JOIN film_likes AS l ON f.id = l.film_id\n" +
-                where +
-                "GROUP BY f.id\n" +
-                "ORDER BY COUNT(l.film_id) DESC\n" +
-                "LIMIT :count;";
-        SqlParameterSource namedParameters = new MapSqlParameterSource().addValue("count", count);
-        var films = jdbcTemplate.query(sqlReadFilmQuery, namedParameters, this::makeFilms);
-        String sqlReadGenreQuery = "SELECT f.film_id,\n" +
-                "    f.genre_id,\n" +
-                "    g.name\n" +
-                "FROM genre AS g\n" +
-                "JOIN film_genre AS f ON f.genre_id = g.id\n" +
-                "ORDER BY f.film_id;";
-        var filmGenres = jdbcTemplate.query(sqlReadGenreQuery, this::makeFilmGenre);
-        addGenreInFilms(films, filmGenres);
-        String sqlReadDirectorQuery = "SELECT f.film_id,\n" +
-                "    f.director_id,\n" +
-                "    d.name\n" +
-                "FROM director AS d\n" +
-                "JOIN film_director AS f ON f.director_id = d.id\n" +
-                "ORDER BY f.film_id;";
-        var filmDirectors = jdbcTemplate.query(sqlReadDirectorQuery, this::makeFilmDirector);
-        addDirectorInFilms(films, filmDirectors);
-        return films;
+        return findByIds(popularityIndex.top(count, genreId, year));
     }
 
     @Override
     public List<Film> getByDirectorId(Long id, String sortBy) {
-        String sqlReadFilmQuery = getDirectorIdQuery(sortBy);
+        if (!"year".equals(sortBy)) {
+            return findByIds(popularityIndex.rank(searchIndex.findByDirector(id)));
+        }
+        String sqlReadFilmQuery = FILM_SELECT +
+                "WHERE f.id IN ( " +
+                "   SELECT film_id " +
+                "   FROM film_director " +
+                "   WHERE director_id = :id " +
+                ") " +
+                "ORDER BY f.release_date;";
         SqlParameterSource namedParameters = new MapSqlParameterSource()
                 .addValue("id", id);
-        var films = jdbcTemplate.query(sqlReadFilmQuery, namedParameters, this::makeFilms);
-        String sqlReadGenreQuery = "SELECT f.film_id,\n" +
-                "    f.genre_id,\n" +
-                "    g.name\n" +
-                "FROM genre AS g\n" +
-                "JOIN film_genre AS f ON f.genre_id = g.id\n" +
-                "ORDER BY f.film_id;";
-        var filmGenres = jdbcTemplate.query(sqlReadGenreQuery, this::makeFilmGenre);
-        addGenreInFilms(films, filmGenres);
-        String sqlReadDirectorQuery = "SELECT f.film_id,\n" +
-                "    f.director_id,\n" +
-                "    d.name\n" +
-                "FROM director AS d\n" +
-                "JOIN film_director AS f ON f.director_id = d.id\n" +
-                "ORDER BY f.film_id;";
-        var filmDirectors = jdbcTemplate.query(sqlReadDirectorQuery, this::makeFilmDirector);
-        addDirectorInFilms(films, filmDirectors);
-        return films;
+        return hydrate(jdbcTemplate.query(sqlReadFilmQuery, namedParameters, this::makeFilms));
     }
 
     @Override
-    public List<Film> getFilmRecommendation(Long userId, Long userWithSimilarLikesId) {
-        SqlParameterSource namedParameters = new MapSqlParameterSource().addValue("user_id", userId)
-                .addValue("another_user_id", userWithSimilarLikesId);
-        String sqlQuery = "SELECT film.id," +
-                "       film.name AS film_name," +
-                "       film.description," +
-                "       film.release_date," +
-                "       film.duration," +
-                "       film.rating_id," +
-                "       r.name AS rating_name " +
-                "FROM film " +
-                "LEFT JOIN rating AS r ON film.rating_id = r.id " +
-                "WHERE film.ID IN (SELECT FILM_ID" +
-                "             FROM FILM_LIKES" +
-                "             WHERE USER_ID = :another_user_id)" +
-                "  AND film.ID NOT IN (SELECT FILM_ID" +
-                "                 FROM FILM_LIKES" +
-                "                 WHERE USER_ID = :user_id) " +
-                "GROUP BY FILM.ID;";
-        var films = jdbcTemplate.query(sqlQuery, namedParameters, this::makeFilms);
-        String sqlReadGenreQuery = "SELECT f.film_id,\n" +
-                "    f.genre_id,\n" +
-                "    g.name\n" +
-                "FROM genre AS g\n" +
-                "JOIN film_genre AS f ON f.genre_id = g.id\n" +
-                "ORDER BY f.film_id;";
-        String sqlReadDirectorQuery = "SELECT f.film_id,\n" +
-                "    f.director_id,\n" +
-                "    d.name\n" +
-                "FROM director AS d\n" +
-                "JOIN film_director AS f ON f.director_id = d.id\n" +
-                "ORDER BY f.film_id;";
-        var filmDirectors = jdbcTemplate.query(sqlReadDirectorQuery, this::makeFilmDirector);
-        var filmGenres = jdbcTemplate.query(sqlReadGenreQuery, this::makeFilmGenre);
-        addGenreInFilms(films, filmGenres);
-        addDirectorInFilms(films, filmDirectors);
-
-        return films;
+    public List<Film> getRecommendations(Long userId) {
+        return findByIds(socialIndex.recommend(userId));
     }
 
     @Override
     public List<Film> findByTitle(String query) {
-        String sqlQuery = "SELECT f.id, " +
-                "       f.name AS film_name, " +
-                "       f.description, " +
-                "       f.release_date, " +
-                "       f.duration, " +
-                "       f.rating_id, " +
-                "       r.name AS rating_name, " +
-                "       GROUP_CONCAT(DISTINCT fg.genre_id) AS film_genres_id, " +
-                "       GROUP_CONCAT(DISTINCT g.name) AS film_genres_name, " +
-                "       GROUP_CONCAT(DISTINCT fd.director_id) AS film_director_id, " +
-                "       GROUP_CONCAT(DISTINCT d.name) AS film_director_name " +
-                "FROM film AS f " +
-                "LEFT JOIN rating AS r ON f.rating_id = r.id " +
-                "LEFT JOIN film_genre AS fg ON f.id = fg.film_id " +
-                "LEFT JOIN genre AS g ON fg.genre_id = g.id " +
-                "LEFT JOIN film_director AS fd ON f.id = fd.film_id " +
-                "LEFT JOIN director AS d ON fd.director_id = d.id " +
-                "WHERE LOWER(f.name) LIKE LOWER(:query) " +
-                "GROUP BY f.id, f.name, f.description, f.release_date, f.duration, f.rating_id, r.name";
-        SqlParameterSource namedParameters = new MapSqlParameterSource().addValue("query", "%" + query + "%");
-        return jdbcTemplate.query(sqlQuery, namedParameters, this::makeAllFilms);
+        return findByIds(popularityIndex.rank(searchIndex.findByTitle(query)));
     }
 
     @Override
     public List<Film> findByDirectorName(String query) {
-        String sqlQuery = "SELECT f.id, " +
-                "       f.name AS film_name, " +
-                "       f.description, " +
-                "       f.release_date, " +
-                "       f.duration, " +
-                "       f.rating_id, " +
-                "       r.name AS rating_name " +
-                "FROM film AS f " +
-                "LEFT JOIN rating AS r ON f.rating_id = r.id " +
-                "WHERE f.id IN (SELECT fd.film_id FROM film_director AS fd " +
-                "               INNER JOIN director AS d ON fd.director_id = d.id " +
-                "               WHERE LOWER(d.name) LIKE LOWER(:query))";
-        SqlParameterSource namedParameters = new MapSqlParameterSource().addValue("query", "%" + query + "%");
-        var films = jdbcTemplate.query(sqlQuery, namedParameters, this::makeFilms);
-
-        String sqlReadGenreQuery = "SELECT f.film_id, " +
-                "    f.genre_id, " +
-                "    g.name " +
-                "FROM genre AS g " +
-                "JOIN film_genre AS f ON f.genre_id = g.id " +
-                "ORDER BY f.film_id";
-        var filmGenres = jdbcTemplate.query(sqlReadGenreQuery, this::makeFilmGenre);
-        addGenreInFilms(films, filmGenres);
-
-        String sqlReadDirectorQuery = "SELECT f.film_id, " +
-                "    f.director_id, " +
-                "    d.name " +
-                "FROM director AS d " +
-                "JOIN film_director AS f ON f.director_id = d.id " +
-                "ORDER BY f.film_id";
-        var filmDirectors = jdbcTemplate.query(sqlReadDirectorQuery, this::makeFilmDirector);
-        addDirectorInFilms(films, filmDirectors);
-
-        return films;
+        return findByIds(popularityIndex.rank(searchIndex.findByDirectorName(query)));
     }
 
     @Override
     public List<Film> findByTitleOrDirectorName(String titleQuery, String directorQuery) {
-        String sqlQuery = "SELECT DISTINCT f.id, " +
-                "       f.name AS film_name, " +
-                "       f.description, " +
-                "       f.release_date, " +
-                "       f.duration, " +
-                "       f.rating_id, " +
-                "       r.name AS rating_name, " +
-                "       fg.genre_id AS film_genres_id, " +
-                "       g.name AS film_genres_name, " +
-                "       fd.director_id AS film_director_id, " +
-                "       d.name AS film_director_name, " +
-                "       COUNT(fl.film_id) AS like_count " +
-                "FROM film AS f " +
-                "LEFT JOIN rating AS r ON f.rating_id = r.id " +
-                "LEFT JOIN film_genre AS fg ON f.id = fg.film_id " +
-                "LEFT JOIN genre AS g ON fg.genre_id = g.id " +
-                "LEFT JOIN film_director AS fd ON f.id = fd.film_id " +
-                "LEFT JOIN director AS d ON fd.director_id = d.id " +
-                "LEFT JOIN film_likes AS fl ON f.id = fl.film_id " +
-                "WHERE LOWER(f.name) LIKE LOWER(:titleQuery) OR LOWER(d.name) LIKE LOWER(:directorQuery) " +
-                "GROUP BY f.id, f.name, f.description, f.release_date, f.duration, f.rating_id, r.name, " +
-                "         fg.genre_id, g.name, fd.director_id, d.name " +
-                "ORDER BY like_count DESC";
-
-        SqlParameterSource namedParameters = new MapSqlParameterSource()
-                .addValue("titleQuery", "%" + titleQuery + "%")
-                .addValue("directorQuery", "%" + directorQuery + "%");
-
-        return jdbcTemplate.query(sqlQuery, namedParameters, this::makeAllFilms);
+        Set<Long> filmIds = new HashSet<>(searchIndex.findByTitle(titleQuery));
+        filmIds.addAll(searchIndex.findByDirectorName(directorQuery));
+        return findByIds(popularityIndex.rank(filmIds));
     }
 
-    private static String getWhere(Integer genreId, Integer year) {
-        if (genreId == null && year == null) return "";
-        var dateQuery = String.format("f.release_date BETWEEN '%1$d-01-01' AND '%1$d-12-31'", year);
-        var genreQuery = String.format("f.id IN (SELECT film_id FROM film_genre WHERE genre_id = %d)", genreId);
-        if (genreId != null && year != null) {
-            return "WHERE (" + dateQuery + ") AND (" + genreQuery + ")\n";
-        }
-        if (genreId != null) {
-            return "WHERE " + genreQuery + "\n";
-        }
-        return "WHERE " + dateQuery + "\n";
+    @Override
+    public List<Film> getCommon(long userId, long friendId) {
+        return findByIds(popularityIndex.rank(socialIndex.commonFilms(userId, friendId)));
     }
 
-    private static String getDirectorIdQuery(String sortBy) {
-        String orderBy;
-        if ("year".equals(sortBy)) {
-            orderBy = "ORDER BY f.release_date";
-        } else {
-            orderBy = "ORDER BY COUNT(l.film_id) DESC";
+    @Override
+    public List<Film> findByIds(Collection<Long> ids) {
+        Map<Long, Film> films = new HashMap<>();
+        for (var chunk : chunks(new ArrayList<>(ids))) {
+            String sqlReadFilmQuery = FILM_SELECT +
+                    "WHERE f.id IN (:ids);";
+            SqlParameterSource namedParameters = new MapSqlParameterSource().addValue("ids", chunk);
+            for (var film : jdbcTemplate.query(sqlReadFilmQuery, namedParameters, this::makeFilms)) {
+                films.put(film.getId(), film);
+            }
         }
-        return "SELECT f.id, " +
-                "    f.name AS film_name, " +
-                "    f.description, " +
-                "    f.release_date, " +
-                "    f.duration, " +
-                "    f.rating_id, " +
-                "    r.name AS rating_name " +
-                "FROM film AS f " +
-                "LEFT JOIN rating AS r ON f.rating_id = r.id " +
-                "LEFT JOIN film_likes AS l ON f.id = l.film_id " +
-                "WHERE f.id IN ( " +
-                "   SELECT film_id " +
-                "   FROM film_director " +
-                "   WHERE director_id = :id " +
-                ") " +
-                "GROUP BY f.id " +
-                orderBy + ";";
+        return hydrate(ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
     }
 
     @Override
-    public List<Film> getCommon(long userId, long friendId) {
-        String sqlReadFilmQuery = "WITH common_ids AS (\n" +
-                "    SELECT film_id\n" +
-                "    FROM film_likes\n" +
-                "    WHERE user_id = :userId AND film_id IN (\n" +
-                "        SELECT film_id\n" +
-                "        FROM film_likes\n" +
-                "        WHERE user_id = :friendId\n" +
-                "    )\n" +
-                ")\n" +
-                "SELECT f.id,\n" +
-                "    f.name AS film_name,\n" +
-                "    f.description,\n" +
-                "    f.release_date,\n" +
-                "    f.duration,\n" +
-                "    f.rating_id,\n" +
-                "    r.name AS rating_name,\n" +
-                "    (SELECT ARRAY_AGG(genre_id)\n" +
-                "     FROM film_genre\n" +
-                "     WHERE film_id = f.id) AS film_genres_id,\n" +
-                "     \n" +
-                "    (SELECT ARRAY_AGG(name)\n" +
-                "     FROM genre\n" +
-                "     WHERE id IN (SELECT genre_id FROM film_genre WHERE film_id = f.id)) AS film_genres_name,\n" +
-                "     \n" +
-                "    (SELECT ARRAY_AGG(director_id)\n" +
-                "     FROM film_director\n" +
-                "     WHERE film_id = f.id) AS film_director_id,\n" +
-                "     \n" +
-                "    (SELECT ARRAY_AGG(name)\n" +
-                "     FROM director\n" +
-                "     WHERE id IN (SELECT director_id FROM film_director WHERE film_id = f.id)) AS film_director_name\n" +
-                "\n" +
-                "FROM film f INNER JOIN common_ids ON f.id = common_ids.film_id\n" +
-                "INNER JOIN film_likes fl ON f.id = fl.film_id\n" +
-                "INNER JOIN rating r ON f.rating_id = r.id\n" +
-                "GROUP BY f.id\n" +
-                "ORDER BY count(fl.film_id) DESC;";
-        SqlParameterSource namedParameters = new MapSqlParameterSource()
-                .addValue("userId", userId)
-                .addValue("friendId", friendId);
-
-        return jdbcTemplate.query(sqlReadFilmQuery, namedParameters, this::makeAllFilms);
-    }
-
-    private void addGenreInFilms(List<Film> films, List<FilmGenre> filmGenres) {
-        Map<Long, Set<Genre>> genresMap = new HashMap<>();
-        for (var filmGenre: filmGenres) {
-            genresMap.putIfAbsent(filmGenre.getId(), new LinkedHashSet<>());
-            genresMap.get(filmGenre.getId()).add(filmGenre.getGenre());
-        }
-        for (var film: films) {
-            var genres = genresMap.getOrDefault(film.getId(), new LinkedHashSet<>());
-            for (var genre: genres) {
-                film.addGenre(genre);
-            }
+    public Set<Long> findExistingIds(Collection<Long> ids) {
+        Set<Long> existing = new HashSet<>();
+        for (var chunk : chunks(new ArrayList<>(ids))) {
+            SqlParameterSource namedParameters = new MapSqlParameterSource().addValue("ids", chunk);
+            existing.addAll(jdbcTemplate.queryForList("SELECT id FROM film WHERE id IN (:ids)", namedParameters,
+                    Long.class));
         }
+        return existing;
     }
 
-    private void addDirectorInFilms(List<Film> films, List<FilmDirector> filmDirectors) {
-        Map<Long, Set<Director>> genresMap = new HashMap<>();
-        for (var filmDirector: filmDirectors) {
-            genresMap.putIfAbsent(filmDirector.getId(), new LinkedHashSet<>());
-            genresMap.get(filmDirector.getId()).add(filmDirector.getDirector());
+    /**
+     * Loads genres and directors of the given films only, querying them in id chunks.
+     */
+    private List<Film> hydrate(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
         }
-        for (var film: films) {
-            var directors = genresMap.getOrDefault(film.getId(), new LinkedHashSet<>());
-            for (var director: directors) {
-                film.addDirector(director);
-            }
+        Map<Long, Film> filmsById = new HashMap<>();
+        for (var film : films) {
+            filmsById.put(film.getId(), film);
         }
+        for (var chunk : chunks(new ArrayList<>(filmsById.keySet()))) {
+            SqlParameterSource namedParameters = new MapSqlParameterSource().addValue("ids", chunk);
+            String sqlReadGenreQuery = "SELECT film_id,\n" +
+                    "    genre_id\n" +
+                    "FROM film_genre\n" +
+                    "WHERE film_id IN (:ids)\n" +
+                    "ORDER BY id;";
+            jdbcTemplate.query(sqlReadGenreQuery, namedParameters, resultSet -> {
+                filmsById.get(resultSet.getLong("film_id"))
+                        .addGenre(referenceData.getGenre(resultSet.getInt("genre_id")));
+            });
+            String sqlReadDirectorQuery = "SELECT fd.film_id,\n" +
+                    "    fd.director_id,\n" +
+                    "    d.name\n" +
+                    "FROM film_director AS fd\n" +
+                    "JOIN director AS d ON fd.director_id = d.id\n" +
+                    "WHERE fd.film_id IN (:ids)\n" +
+                    "ORDER BY fd.id;";
+            jdbcTemplate.query(sqlReadDirectorQuery, namedParameters, resultSet -> {
+                filmsById.get(resultSet.getLong("film_id"))
+                        .addDirector(new Director(resultSet.getLong("director_id"), resultSet.getString("name")));
+            });
+        }
+        return films;
     }
 
-    private Map<String, Object> filmToMap(Film film) {
-        Map<String, Object> values = new HashMap<>();
-        values.put("name", film.getName());
-        values.put("description", film.getDescription());
-        values.put("release_date", film.getReleaseDate());
-        values.put("duration", film.getDuration());
-        values.put("rating_id", film.getMpa() == null ? null : film.getMpa().getId());
-        return values;
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (var from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+            chunks.add(ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size())));
+        }
+        return chunks;
     }
 
     private Film makeFilms(ResultSet resultSet, int rowNum) throws SQLException {
         var releaseDate = resultSet.getDate("release_date");
         var releaseLocalDate = releaseDate == null ? null : releaseDate.toLocalDate();
-        var rating = resultSet.getInt("rating_id") < 1 ? null :
-                new Mpa(resultSet.getInt("rating_id"), resultSet.getString("rating_name"));
+        var ratingId = resultSet.getInt("rating_id");
+        var rating = ratingId < 1 ? null : referenceData.getMpa(ratingId);
         return new Film(resultSet.getLong("id"),
                 resultSet.getString("film_name"),
                 resultSet.getString("description"),
@@ -494,59 +432,12 @@ public class DbFilmStorage implements FilmStorage {
         );
     }
 
-    private Film makeAllFilms(ResultSet resultSet, int rowNum) throws SQLException {
-        var releaseDate = resultSet.getDate("release_date");
-        var releaseLocalDate = releaseDate == null ? null : releaseDate.toLocalDate();
-        var rating = resultSet.getInt("rating_id") < 1 ? null :
-                new Mpa(resultSet.getInt("rating_id"), resultSet.getString("rating_name"));
-        var film = new Film(resultSet.getLong("id"),
-                resultSet.getString("film_name"),
-                resultSet.getString("description"),
-                releaseLocalDate,
-                resultSet.getInt("duration"),
-                rating,
-                new LinkedHashSet<>(),
-                new LinkedHashSet<>()
-        );
-        var filmGenresId = resultSet.getArray("film_genres_id");
-        var filmGenresName = resultSet.getArray("film_genres_name");
-        if (filmGenresId != null &&  filmGenresName != null) {
-            var genresId = Arrays.stream((Object[]) filmGenresId.getArray())
-                    .filter(Objects::nonNull)
-                    .mapToInt((t) -> (Integer) t)
-                    .toArray();
-            var genresName = Arrays.stream((Object[]) filmGenresName.getArray())
-                    .filter(Objects::nonNull)
-                    .map(String::valueOf)
-                    .toArray(String[]::new);
-            for (var i = 0; i < genresId.length && i < genresName.length; ++i) {
-                film.addGenre(new Genre(genresId[i], genresName[i]));
-            }
-        }
-        var filmDirectorId = resultSet.getArray("film_director_id");
-        var filmDirectorName = resultSet.getArray("film_director_name");
-        if (filmDirectorId != null &&  filmDirectorName != null) {
-            var directorId = Arrays.stream((Object[]) filmDirectorId.getArray())
-                    .filter(Objects::nonNull)
-                    .mapToLong((t) -> (Long) t)
-                    .toArray();
-            var directorName = Arrays.stream((Object[]) filmDirectorName.getArray())
-                    .filter(Objects::nonNull)
-                    .map(String::valueOf)
-                    .toArray(String[]::new);
-            for (var i = 0; i < directorId.length && i < directorName.length; ++i) {
-                film.addDirector(new Director(directorId[i], directorName[i]));
-            }
-        }
-        return film;
-    }
-
     private Optional<Film> makeFilm(ResultSet resultSet) throws SQLException {
         if (resultSet.next()) {
             var releaseDate = resultSet.getDate("release_date");
             var releaseLocalDate = releaseDate == null ? null : releaseDate.toLocalDate();
-            var rating = resultSet.getInt("rating_id") < 1 ? null :
-                    new Mpa(resultSet.getInt("rating_id"), resultSet.getString("rating_name"));
+            var ratingId = resultSet.getInt("rating_id");
+            var rating = ratingId < 1 ? null : referenceData.getMpa(ratingId);
             var film = new Film(resultSet.getLong("id"),
                     resultSet.getString("film_name"),
                     resultSet.getString("description"),
@@ -558,19 +449,11 @@ public class DbFilmStorage implements FilmStorage {
             );
 
             var filmGenresId = resultSet.getArray("film_genres_id");
-            var filmGenresName = resultSet.getArray("film_genres_name");
-            if (filmGenresId != null &&  filmGenresName != null) {
-                var genresId = Arrays.stream((Object[]) filmGenresId.getArray())
+            if (filmGenresId != null) {
+                Arrays.stream((Object[]) filmGenresId.getArray())
                         .filter(Objects::nonNull)
                         .mapToInt((t) -> (Integer) t)
-                        .toArray();
-                var genresName = Arrays.stream((Object[]) filmGenresName.getArray())
-                        .filter(Objects::nonNull)
-                        .map(String::valueOf)
-                        .toArray(String[]::new);
-                for (var i = 0; i < genresId.length && i < genresName.length; ++i) {
-                    film.addGenre(new Genre(genresId[i], genresName[i]));
-                }
+                        .forEach(genreId -> film.addGenre(referenceData.getGenre(genreId)));
             }
             var filmDirectorId = resultSet.getArray("film_director_id");
             var filmDirectorName = resultSet.getArray("film_director_name");
@@ -592,26 +475,34 @@ public class DbFilmStorage implements FilmStorage {
         return Optional.empty();
     }
 
-    private Genre makeGenre(ResultSet resultSet, int rowNum) throws SQLException {
-        return new Genre(resultSet.getInt("id"),
-                resultSet.getString("name")
-        );
-    }
-
-    private FilmGenre makeFilmGenre(ResultSet resultSet, int rowNum) throws SQLException {
-        return new FilmGenre(resultSet.getLong("film_id"),
-                new Genre(resultSet.getInt("genre_id"), resultSet.getString("name"))
-        );
+    private void indexFilm(Film film) {
+        long id = film.getId();
+        var releaseDate = film.getReleaseDate();
+        var name = film.getName();
+        var genreIds = genreIds(film);
+        var directorIds = directorIds(film);
+        AfterCommit.run(() -> {
+            popularityIndex.put(id, releaseDate, genreIds);
+            searchIndex.putFilm(id, name, directorIds);
+        });
     }
 
-    private FilmDirector makeFilmDirector(ResultSet resultSet, int rowNum) throws SQLException {
-        return new FilmDirector(resultSet.getLong("film_id"),
-                new Director(resultSet.getInt("director_id"), resultSet.getString("name"))
-        );
+    private static List<Long> directorIds(Film film) {
+        if (film.getDirectors() == null) {
+            return List.of();
+        }
+        return film.getDirectors().stream()
+                .map(Director::getId)
+                .collect(Collectors.toList());
     }
 
-    private Map.Entry<Long, Long> makeOrder(ResultSet resultSet, int rowNum) throws SQLException {
-        return Map.entry(resultSet.getLong("film_id"), resultSet.getLong("likes"));
+    private static List<Integer> genreIds(Film film) {
+        if (film.getGenres() == null) {
+            return List.of();
+        }
+        return film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toList());
     }
 
     private void updateFilmGenre(Film film) {
@@ -634,18 +525,4 @@ public class DbFilmStorage implements FilmStorage {
                     batch);
         }
     }
-
-    @Data
-    @AllArgsConstructor
-    private static class FilmGenre {
-        private long id;
-        private Genre genre;
-    }
-
-    @Data
-    @AllArgsConstructor
-    private static class FilmDirector {
-        private long id;
-        private Director director;
-    }
 }
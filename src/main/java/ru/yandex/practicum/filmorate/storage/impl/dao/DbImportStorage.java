@@ -0,0 +1,292 @@
+package ru.yandex.practicum.filmorate.storage.impl.dao;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.ImportStorage;
+import ru.yandex.practicum.filmorate.storage.index.AfterCommit;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikeBuffer;
+import ru.yandex.practicum.filmorate.storage.index.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.index.SocialIndex;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+@Repository("importDbStorage")
+@RequiredArgsConstructor
+public class DbImportStorage implements ImportStorage {
+
+    private static final String INSERT_FILM = "INSERT INTO film(name, description, release_date, duration, " +
+            "rating_id) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_FILM_WITH_ID = "INSERT INTO film(id, name, description, release_date, " +
+            "duration, rating_id) VALUES (:id, :name, :description, :release_date, :duration, :rating_id)";
+    private static final String INSERT_USER = "INSERT INTO users(email, login, name, birthday) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_USER_WITH_ID = "INSERT INTO users(id, email, login, name, birthday) " +
+            "VALUES (:id, :email, :login, :name, :birthday)";
+
+    private final NamedParameterJdbcOperations jdbcTemplate;
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmSearchIndex searchIndex;
+    private final SocialIndex socialIndex;
+    private final ReferenceDataCache referenceData;
+    private final LikeBuffer likeBuffer;
+
+    @Override
+    public Set<Integer> findMpaIds(Collection<Integer> ids) {
+        return ids.stream()
+                .filter(id -> referenceData.findMpa(id).isPresent())
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public Set<Integer> findGenreIds(Collection<Integer> ids) {
+        return ids.stream()
+                .filter(id -> referenceData.findGenre(id).isPresent())
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public Set<Long> findDirectorIds(Collection<Long> ids) {
+        return findIds("SELECT id FROM director WHERE id IN (:ids)", ids, Long.class);
+    }
+
+    @Override
+    public Set<Long> findFilmIds(Collection<Long> ids) {
+        return findIds("SELECT id FROM film WHERE id IN (:ids)", ids, Long.class);
+    }
+
+    @Override
+    public Set<Long> findUserIds(Collection<Long> ids) {
+        return findIds("SELECT id FROM users WHERE id IN (:ids)", ids, Long.class);
+    }
+
+    @Override
+    @Transactional
+    public List<Long> insertFilms(List<Film> films) {
+        List<Film> withId = new ArrayList<>();
+        List<Film> withoutId = new ArrayList<>();
+        for (var film : films) {
+            (film.getId() > 0 ? withId : withoutId).add(film);
+        }
+        jdbcTemplate.batchUpdate(INSERT_FILM_WITH_ID, withId.stream()
+                .map(film -> filmParameters(film).addValue("id", film.getId()))
+                .toArray(SqlParameterSource[]::new));
+        var generated = insertReturningIds(INSERT_FILM, withoutId, (statement, film) -> {
+            statement.setString(1, film.getName());
+            statement.setString(2, film.getDescription());
+            statement.setObject(3, film.getReleaseDate() == null ? null : Date.valueOf(film.getReleaseDate()),
+                    Types.DATE);
+            statement.setInt(4, film.getDuration());
+            statement.setObject(5, film.getMpa() == null ? null : film.getMpa().getId(), Types.INTEGER);
+        });
+        var ids = mergeIds(films, Film::getId, generated);
+
+        List<SqlParameterSource> genres = new ArrayList<>();
+        List<SqlParameterSource> directors = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            var filmId = ids.get(i);
+            for (var genre : films.get(i).getGenres()) {
+                genres.add(new MapSqlParameterSource()
+                        .addValue("film_id", filmId)
+                        .addValue("genre_id", genre.getId()));
+            }
+            for (var director : films.get(i).getDirectors()) {
+                directors.add(new MapSqlParameterSource()
+                        .addValue("film_id", filmId)
+                        .addValue("director_id", director.getId()));
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO film_genre(film_id, genre_id) VALUES (:film_id, :genre_id)",
+                genres.toArray(SqlParameterSource[]::new));
+        jdbcTemplate.batchUpdate("INSERT INTO film_director(film_id, director_id) VALUES (:film_id, :director_id)",
+                directors.toArray(SqlParameterSource[]::new));
+
+        AfterCommit.run(() -> {
+            for (int i = 0; i < films.size(); i++) {
+                var film = films.get(i);
+                popularityIndex.put(ids.get(i), film.getReleaseDate(), film.getGenres().stream()
+                        .map(Genre::getId)
+                        .collect(Collectors.toList()));
+                searchIndex.putFilm(ids.get(i), film.getName(), film.getDirectors().stream()
+                        .map(Director::getId)
+                        .collect(Collectors.toList()));
+            }
+        });
+        return ids;
+    }
+
+    @Override
+    @Transactional
+    public List<Long> insertUsers(List<User> users) {
+        List<User> withId = new ArrayList<>();
+        List<User> withoutId = new ArrayList<>();
+        for (var user : users) {
+            (user.getId() > 0 ? withId : withoutId).add(user);
+        }
+        jdbcTemplate.batchUpdate(INSERT_USER_WITH_ID, withId.stream()
+                .map(user -> new MapSqlParameterSource()
+                        .addValue("id", user.getId())
+                        .addValue("email", user.getEmail())
+                        .addValue("login", user.getLogin())
+                        .addValue("name", user.getName())
+                        .addValue("birthday", user.getBirthday()))
+                .toArray(SqlParameterSource[]::new));
+        var generated = insertReturningIds(INSERT_USER, withoutId, (statement, user) -> {
+            statement.setString(1, user.getEmail());
+            statement.setString(2, user.getLogin());
+            statement.setString(3, user.getName());
+            statement.setObject(4, user.getBirthday() == null ? null : Date.valueOf(user.getBirthday()),
+                    Types.DATE);
+        });
+        return mergeIds(users, User::getId, generated);
+    }
+
+    @Override
+    @Transactional
+    public void insertFriends(List<Friendship> friendships) {
+        jdbcTemplate.batchUpdate("MERGE INTO friend(user_id, friend_id) VALUES (:user_id, :friend_id)",
+                friendships.stream()
+                        .map(friendship -> new MapSqlParameterSource()
+                                .addValue("user_id", friendship.getUserId())
+                                .addValue("friend_id", friendship.getFriendId()))
+                        .toArray(SqlParameterSource[]::new));
+        AfterCommit.run(() -> friendships.forEach(friendship ->
+                socialIndex.addFriend(friendship.getUserId(), friendship.getFriendId())));
+    }
+
+    @Override
+    @Transactional
+    public int insertLikes(List<FilmLike> likes) {
+        if (likeBuffer.isEnabled()) {
+            likeBuffer.flush();
+        }
+        var counts = jdbcTemplate.batchUpdate("INSERT INTO film_likes(film_id, user_id) " +
+                        "SELECT :film_id, :user_id WHERE NOT EXISTS " +
+                        "(SELECT 1 FROM film_likes WHERE film_id = :film_id AND user_id = :user_id)",
+                likes.stream()
+                        .map(like -> new MapSqlParameterSource()
+                                .addValue("film_id", like.getFilmId())
+                                .addValue("user_id", like.getUserId()))
+                        .toArray(SqlParameterSource[]::new));
+        Map<Long, Long> added = new HashMap<>();
+        List<FilmLike> inserted = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                added.merge(likes.get(i).getFilmId(), 1L, Long::sum);
+                inserted.add(likes.get(i));
+            }
+        }
+        jdbcTemplate.batchUpdate("UPDATE film SET like_count = like_count + :delta WHERE id = :id",
+                added.entrySet().stream()
+                        .map(entry -> new MapSqlParameterSource()
+                                .addValue("id", entry.getKey())
+                                .addValue("delta", entry.getValue()))
+                        .toArray(SqlParameterSource[]::new));
+        AfterCommit.run(() -> {
+            added.forEach(popularityIndex::addLikes);
+            inserted.forEach(like -> socialIndex.addLike(like.getFilmId(), like.getUserId()));
+        });
+        return added.values().stream().mapToInt(Long::intValue).sum();
+    }
+
+    @Override
+    public void restartFilmIds() {
+        restartIds("film");
+    }
+
+    @Override
+    public void restartUserIds() {
+        restartIds("users");
+    }
+
+    private void restartIds(String table) {
+        var maxId = jdbcTemplate.getJdbcOperations()
+                .queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+        jdbcTemplate.getJdbcOperations()
+                .execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + (maxId + 1));
+    }
+
+    private <T> Set<T> findIds(String sqlQuery, Collection<T> ids, Class<T> type) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(sqlQuery, new MapSqlParameterSource("ids", ids), type));
+    }
+
+    private MapSqlParameterSource filmParameters(Film film) {
+        return new MapSqlParameterSource()
+                .addValue("name", film.getName())
+                .addValue("description", film.getDescription())
+                .addValue("release_date", film.getReleaseDate())
+                .addValue("duration", film.getDuration())
+                .addValue("rating_id", film.getMpa() == null ? null : film.getMpa().getId());
+    }
+
+    /**
+     * Runs a JDBC batch and reads the generated ids, which the named template cannot do for batches.
+     */
+    private <T> List<Long> insertReturningIds(String sqlQuery, List<T> rows, StatementSetter<T> setter) {
+        List<Long> ids = new ArrayList<>(rows.size());
+        if (rows.isEmpty()) {
+            return ids;
+        }
+        return jdbcTemplate.getJdbcOperations().execute((ConnectionCallback<List<Long>>) connection -> {
+            try (var statement = connection.prepareStatement(sqlQuery, new String[]{"id"})) {
+                for (var row : rows) {
+                    setter.set(statement, row);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (var keys = statement.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.add(keys.getLong(1));
+                    }
+                }
+            }
+            if (ids.size() != rows.size()) {
+                throw new IllegalStateException(String.format("expected %d generated ids, got %d",
+                        rows.size(), ids.size()));
+            }
+            return ids;
+        });
+    }
+
+    private static <T> List<Long> mergeIds(List<T> rows, ToLongFunction<T> id,
+                                           List<Long> generated) {
+        List<Long> ids = new ArrayList<>(rows.size());
+        var next = generated.iterator();
+        for (var row : rows) {
+            var rowId = id.applyAsLong(row);
+            ids.add(rowId > 0 ? rowId : next.next());
+        }
+        return ids;
+    }
+
+    @FunctionalInterface
+    private interface StatementSetter<T> {
+        void set(PreparedStatement statement, T row) throws SQLException;
+    }
+}
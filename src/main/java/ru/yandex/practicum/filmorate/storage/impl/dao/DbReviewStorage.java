@@ -5,19 +5,31 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.storage.ReviewStorage;
+import ru.yandex.practicum.filmorate.storage.index.ReviewRankIndex;
+import ru.yandex.practicum.filmorate.storage.index.ReviewUsefulCounters;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Repository
 @RequiredArgsConstructor
 public class DbReviewStorage implements ReviewStorage {
+    private static final int ID_CHUNK_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final ReviewUsefulCounters usefulCounters;
+    private final ReviewRankIndex rankIndex;
 
     @Override
     public long addAndReturnId(Review review) {
@@ -34,7 +46,9 @@ public class DbReviewStorage implements ReviewStorage {
             return ps;
         }, keyHolder);
 
-        return keyHolder.getKey().longValue();
+        var id = keyHolder.getKey().longValue();
+        rankIndex.put(id, review.getFilmId());
+        return id;
     }
 
     @Override
@@ -49,62 +63,132 @@ public class DbReviewStorage implements ReviewStorage {
     public void delete(long id) {
         String sqlQuery = "delete from review where id = ?";
         jdbcTemplate.update(sqlQuery, id);
+        usefulCounters.remove(id);
+        rankIndex.remove(id);
     }
 
     @Override
     public Review getById(long id) {
         String sqlQuery = "select * from review where id = ?";
-        return jdbcTemplate.queryForObject(sqlQuery, this::mapRowToReview, id);
+        if (!usefulCounters.isEnabled()) {
+            return jdbcTemplate.queryForObject(sqlQuery, this::mapRowToReview, id);
+        }
+        return usefulCounters.read(() -> {
+            var review = jdbcTemplate.queryForObject(sqlQuery, this::mapRowToReview, id);
+            review.setUseful(review.getUseful() + usefulCounters.getPending(id));
+            return review;
+        });
     }
 
     @Override
     public Collection<Review> getAll(long count) {
-        String sqlQuery = "select * from review order by useful desc limit ?";
-        return jdbcTemplate.query(sqlQuery, this::mapRowToReview, count);
+        return getPage(null, null, 0, count);
     }
 
     @Override
     public Collection<Review> getFilmReviews(long filmId, long count) {
-        String sqlQuery = "select * from review where film_id = ? order by useful desc limit ?";
-        return jdbcTemplate.query(sqlQuery, this::mapRowToReview, filmId, count);
+        return getPage(filmId, null, 0, count);
+    }
+
+    /**
+     * Takes the page from the rank index and loads its reviews by id. Reviews deleted together with their film
+     * or user stay ranked until a page misses them, then they are dropped from the index and the page is read again.
+     */
+    @Override
+    public List<Review> getPage(Long filmId, Long afterId, long offset, long count) {
+        var limit = (int) Math.min(count, Integer.MAX_VALUE);
+        while (true) {
+            var ids = rankIndex.page(filmId, afterId, offset, limit);
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+            Map<Long, Review> found = new HashMap<>();
+            for (var from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+                var chunk = ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()));
+                String sqlQuery = "select * from review where id in (" +
+                        String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+                for (var review : jdbcTemplate.query(sqlQuery, this::mapRowToReview, chunk.toArray())) {
+                    found.put(review.getReviewId(), review);
+                }
+            }
+            if (found.size() == ids.size()) {
+                List<Review> result = new ArrayList<>(ids.size());
+                for (var id : ids) {
+                    var review = found.get(id);
+                    review.setUseful(rankIndex.getUseful(id));
+                    result.add(review);
+                }
+                return result;
+            }
+            ids.stream()
+                    .filter(id -> !found.containsKey(id))
+                    .forEach(rankIndex::remove);
+        }
     }
 
     @Override
-    public void addLike(long reviewId, long userId) {
-        String sqlQuery = "insert into review_likes (review_id, user_id, is_like) values (?, ?, ?)";
-        jdbcTemplate.update(sqlQuery, reviewId, userId, true);
-        increaseUseful(reviewId);
+    @Transactional
+    public boolean addLike(long reviewId, long userId) {
+        return vote(reviewId, userId, true);
     }
 
     @Override
-    public void addDislike(long reviewId, long userId) {
-        String sqlQuery = "insert into review_likes (review_id, user_id, is_like) values (?, ?, ?)";
-        jdbcTemplate.update(sqlQuery, reviewId, userId, false);
-        decreaseUseful(reviewId);
+    @Transactional
+    public boolean addDislike(long reviewId, long userId) {
+        return vote(reviewId, userId, false);
     }
 
     @Override
-    public void deleteLike(long reviewId, long userId) {
-        String sqlQuery = "delete from review_likes where review_id = ? and user_id = ? ";
-        jdbcTemplate.update(sqlQuery, reviewId, userId);
-        decreaseUseful(reviewId);
+    @Transactional
+    public boolean deleteLike(long reviewId, long userId) {
+        return deleteVote(reviewId, userId, true);
     }
 
     @Override
-    public void deleteDislike(long reviewId, long userId) {
-        String sqlQuery = "delete from review_likes where review_id = ? and user_id = ? ";
-        jdbcTemplate.update(sqlQuery, reviewId, userId);
-        increaseUseful(reviewId);
+    @Transactional
+    public boolean deleteDislike(long reviewId, long userId) {
+        return deleteVote(reviewId, userId, false);
+    }
+
+    /**
+     * Upserts the vote and reads the replaced one in the same statement,
+     * then moves useful by the difference, so a repeated vote changes nothing and a flip moves it by two.
+     */
+    private boolean vote(long reviewId, long userId, boolean isLike) {
+        String sqlQuery = "select is_like from old table (merge into review_likes (review_id, user_id, is_like) " +
+                "key (review_id, user_id) values (?, ?, ?))";
+        var replaced = jdbcTemplate.queryForList(sqlQuery, Boolean.class, reviewId, userId, isLike);
+        var delta = weight(isLike) - (replaced.isEmpty() ? 0 : weight(replaced.get(0)));
+        changeUseful(reviewId, delta);
+        return delta != 0;
+    }
+
+    private boolean deleteVote(long reviewId, long userId, boolean isLike) {
+        String sqlQuery = "select count(*) from old table (delete from review_likes " +
+                "where review_id = ? and user_id = ? and is_like = ?)";
+        Integer deleted = jdbcTemplate.queryForObject(sqlQuery, Integer.class, reviewId, userId, isLike);
+        if (deleted == null || deleted == 0) {
+            return false;
+        }
+        changeUseful(reviewId, -weight(isLike));
+        return true;
     }
 
-    private void increaseUseful(long reviewId) {
-        String sqlQuery = "update review set useful = useful + 1 where id = ?";
-        jdbcTemplate.update(sqlQuery, reviewId);
+    private void changeUseful(long reviewId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        rankIndex.addUseful(reviewId, delta);
+        if (usefulCounters.isEnabled()) {
+            usefulCounters.add(reviewId, delta);
+            return;
+        }
+        String sqlQuery = "update review set useful = useful + ? where id = ?";
+        jdbcTemplate.update(sqlQuery, delta, reviewId);
     }
 
-    private void decreaseUseful(long reviewId) {
-        String sqlQuery = "update review set useful = useful - 1 where id = ?";
-        jdbcTemplate.update(sqlQuery, reviewId);
+    private static int weight(boolean isLike) {
+        return isLike ? 1 : -1;
     }
 
     @Override
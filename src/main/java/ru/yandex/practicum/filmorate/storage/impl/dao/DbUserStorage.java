@@ -1,30 +1,45 @@
 package ru.yandex.practicum.filmorate.storage.impl.dao;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.index.AfterCommit;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikeBuffer;
+import ru.yandex.practicum.filmorate.storage.index.RecentFeedCache;
+import ru.yandex.practicum.filmorate.storage.index.SocialIndex;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Repository("userDbStorage")
 @RequiredArgsConstructor
 public class DbUserStorage implements UserStorage {
 
+    private static final int ID_CHUNK_SIZE = 1000;
+
     private final NamedParameterJdbcOperations jdbcTemplate;
+    private final FilmPopularityIndex popularityIndex;
+    private final SocialIndex socialIndex;
+    private final LikeBuffer likeBuffer;
+    private final RecentFeedCache recentFeed;
 
     @Override
     public User create(User user) {
@@ -82,9 +97,23 @@ public class DbUserStorage implements UserStorage {
     }
 
     @Override
+    @Transactional
     public void delete(Long id) {
+        if (likeBuffer.isEnabled()) {
+            likeBuffer.flush();
+        }
         SqlParameterSource namedParameters = new MapSqlParameterSource().addValue("id", id);
-        jdbcTemplate.update("DELETE FROM users WHERE id = :id", namedParameters);
+        var likedFilms = jdbcTemplate.queryForList(
+                "SELECT film_id FROM film_likes WHERE user_id = :id", namedParameters, Long.class);
+        jdbcTemplate.update("UPDATE film SET like_count = like_count - 1 " +
+                "WHERE id IN (SELECT film_id FROM film_likes WHERE user_id = :id)", namedParameters);
+        if (jdbcTemplate.update("DELETE FROM users WHERE id = :id", namedParameters) > 0) {
+            AfterCommit.run(() -> {
+                likedFilms.forEach(filmId -> popularityIndex.addLikes(filmId, -1));
+                socialIndex.removeUser(id);
+                recentFeed.evict(id);
+            });
+        }
     }
 
     @Override
@@ -93,6 +122,20 @@ public class DbUserStorage implements UserStorage {
                 .addValue("user_id", userId)
                 .addValue("friend_id", friendId);
         jdbcTemplate.update("MERGE INTO friend(user_id, friend_id) values (:user_id, :friend_id)", namedParameters);
+        AfterCommit.run(() -> socialIndex.addFriend(userId, friendId));
+    }
+
+    @Override
+    @Transactional
+    public void addAllFriends(Long userId, Collection<Long> friendIds) {
+        jdbcTemplate.batchUpdate("MERGE INTO friend(user_id, friend_id) values (:user_id, :friend_id)",
+                friendIds.stream()
+                        .map(friendId -> new MapSqlParameterSource()
+                                .addValue("user_id", userId)
+                                .addValue("friend_id", friendId))
+                        .toArray(SqlParameterSource[]::new));
+        List<Long> added = new ArrayList<>(friendIds);
+        AfterCommit.run(() -> added.forEach(friendId -> socialIndex.addFriend(userId, friendId)));
     }
 
     @Override
@@ -100,7 +143,10 @@ public class DbUserStorage implements UserStorage {
         SqlParameterSource namedParameters = new MapSqlParameterSource()
                 .addValue("user_id", userId)
                 .addValue("friend_id", friendId);
-        jdbcTemplate.update("DELETE FROM friend WHERE user_id = :user_id AND friend_id = :friend_id", namedParameters);
+        if (jdbcTemplate.update("DELETE FROM friend WHERE user_id = :user_id AND friend_id = :friend_id",
+                namedParameters) > 0) {
+            AfterCommit.run(() -> socialIndex.removeFriend(userId, friendId));
+        }
     }
 
     @Override
@@ -120,33 +166,38 @@ public class DbUserStorage implements UserStorage {
 
     @Override
     public List<User> getCommonFriends(Long id, Long secondId) {
-        SqlParameterSource namedParameters = new MapSqlParameterSource()
-                .addValue("id", id)
-                .addValue("second_id", secondId);
-        String sqlQuery =
-                "SELECT u.id,\n" +
-                        "    u.email,\n" +
-                        "    u.login,\n" +
-                        "    u.name,\n" +
-                        "    u.birthday\n" +
-                        "FROM friend AS f\n" +
-                        "JOIN users AS u ON f.friend_id = u.id\n" +
-                        "WHERE f.user_id = :id AND f.friend_id IN (\n" +
-                        "    SELECT us.id\n" +
-                        "    FROM friend AS fs\n" +
-                        "    JOIN users AS us ON fs.friend_id = us.id\n" +
-                        "    WHERE fs.user_id = :second_id\n" +
-                        ");";
-        return jdbcTemplate.query(sqlQuery, namedParameters, this::makeUsers);
+        return findByIds(socialIndex.commonFriends(id, secondId));
     }
 
-    private Map<String, Object> userToMap(User user) {
-        Map<String, Object> values = new HashMap<>();
-        values.put("email", user.getEmail());
-        values.put("login", user.getLogin());
-        values.put("name", user.getName());
-        values.put("birthday", user.getBirthday());
-        return values;
+    @Override
+    public List<User> findByIds(Collection<Long> ids) {
+        List<Long> idList = new ArrayList<>(ids);
+        Map<Long, User> users = new HashMap<>();
+        for (int from = 0; from < idList.size(); from += ID_CHUNK_SIZE) {
+            SqlParameterSource namedParameters = new MapSqlParameterSource()
+                    .addValue("ids", idList.subList(from, Math.min(from + ID_CHUNK_SIZE, idList.size())));
+            for (var user : jdbcTemplate.query("SELECT * FROM users WHERE id IN (:ids)", namedParameters,
+                    this::makeUsers)) {
+                users.put(user.getId(), user);
+            }
+        }
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Set<Long> findExistingIds(Collection<Long> ids) {
+        List<Long> idList = new ArrayList<>(ids);
+        Set<Long> existing = new HashSet<>();
+        for (int from = 0; from < idList.size(); from += ID_CHUNK_SIZE) {
+            SqlParameterSource namedParameters = new MapSqlParameterSource()
+                    .addValue("ids", idList.subList(from, Math.min(from + ID_CHUNK_SIZE, idList.size())));
+            existing.addAll(jdbcTemplate.queryForList("SELECT id FROM users WHERE id IN (:ids)", namedParameters,
+                    Long.class));
+        }
+        return existing;
     }
 
     private User makeUsers(ResultSet resultSet, int rowNum) throws SQLException {
@@ -175,20 +226,4 @@ public class DbUserStorage implements UserStorage {
         }
         return Optional.empty();
     }
-
-    @Override
-    public Long findUserWithSimilarLikes(Long userId) {
-        SqlParameterSource namedParameters = new MapSqlParameterSource().addValue("user_id", userId);
-        String sqlQuery = "SELECT fl2.user_id " +
-                "FROM FILM_LIKES AS fl1, FILM_LIKES AS fl2 " +
-                "WHERE fl1.film_id = fl2.film_id " +
-                "AND fl1.user_id = :user_id AND fl1.user_id <> fl2.user_id " +
-                "GROUP BY fl1.user_id, fl2.user_id " +
-                "ORDER BY count(*) desc limit 1";
-        try {
-            return jdbcTemplate.queryForObject(sqlQuery, namedParameters, Long.class);
-        } catch (EmptyResultDataAccessException e) {
-            return null;
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,282 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Feed;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * Writes feed events from a bounded queue on a dedicated thread with multi-row inserts.
+ * Events are queued once the recording transaction commits, and queued events are only written
+ * under the write lock, in queue order and in a transaction of their own, so events of a user
+ * are stored in the order they were recorded. When the queue is full the caller writes the queue
+ * and its own event itself. Readers flush the queue first, so a user always sees their own events.
+ * With filmorate.feed.async unset every event is inserted by the caller in its transaction.
+ * Stored events get their ids from the insert under the write lock and, once their transaction
+ * commits, are appended to the recent feed cache and published as a FeedStoredEvent. Publication
+ * follows event id order: committed events wait for the transactions holding smaller ids to end.
+ */
+@Slf4j
+@Component
+public class FeedRecorder {
+
+    private static final String INSERT = "SELECT event_id FROM FINAL TABLE (" +
+            "INSERT INTO feed(timestamp, user_id, event_type, operation, entity_id) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?, ?)";
+
+    private final NamedParameterJdbcOperations jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RecentFeedCache recentFeed;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean async;
+    private final int batchSize;
+    private final BlockingQueue<Event> queue;
+    private final Semaphore available = new Semaphore(0);
+    private final Lock writeLock = new ReentrantLock();
+    private final NavigableMap<Long, Pending> unpublished = new TreeMap<>();
+    private volatile boolean running;
+    private Thread writer;
+
+    public FeedRecorder(NamedParameterJdbcOperations jdbcTemplate,
+                        PlatformTransactionManager transactionManager,
+                        RecentFeedCache recentFeed,
+                        ApplicationEventPublisher eventPublisher,
+                        @Value("${filmorate.feed.async:false}") boolean async,
+                        @Value("${filmorate.feed.queue-capacity:10000}") int queueCapacity,
+                        @Value("${filmorate.feed.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.recentFeed = recentFeed;
+        this.eventPublisher = eventPublisher;
+        this.async = async;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!async) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::drainLoop, "feed-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.interrupt();
+            writer.join();
+        }
+        flush();
+    }
+
+    /**
+     * Stores the event, its eventId is set once it is written.
+     */
+    public void record(Feed feed, long eventTypeId, long operationId) {
+        var event = new Event(feed, eventTypeId, operationId);
+        if (!async) {
+            insert(List.of(event));
+            return;
+        }
+        AfterCommit.run(() -> enqueue(event));
+    }
+
+    /**
+     * Stores the events in batch size multi-row inserts, their eventIds are set once they are written.
+     * The queue is written first, so the events are stored after the ones recorded before them.
+     */
+    public void recordAll(List<Feed> feeds, ToLongFunction<Feed> eventTypeId, ToLongFunction<Feed> operationId) {
+        List<Event> events = new ArrayList<>(feeds.size());
+        for (var feed : feeds) {
+            events.add(new Event(feed, eventTypeId.applyAsLong(feed), operationId.applyAsLong(feed)));
+        }
+        if (!async) {
+            insertAll(events);
+            return;
+        }
+        AfterCommit.run(() -> write(events));
+    }
+
+    /**
+     * Writes every queued event before returning, waiting for a batch the writer has in flight.
+     */
+    public void flush() {
+        if (!async) {
+            return;
+        }
+        write(List.of());
+    }
+
+    private void enqueue(Event event) {
+        if (queue.offer(event)) {
+            available.release();
+            return;
+        }
+        write(List.of(event));
+    }
+
+    /**
+     * Writes the queue and then the events in a new transaction, never the caller's one.
+     */
+    private void write(List<Event> events) {
+        writeLock.lock();
+        try {
+            if (queue.isEmpty() && events.isEmpty()) {
+                return;
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                drain();
+                insertAll(events);
+            });
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void drainLoop() {
+        while (running) {
+            try {
+                available.acquire();
+                available.drainPermits();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                write(List.of());
+            } catch (RuntimeException e) {
+                log.error("feed writer: batch failed", e);
+            }
+        }
+    }
+
+    private void drain() {
+        List<Event> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            try {
+                insert(batch);
+            } catch (DataAccessException e) {
+                insertOneByOne(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    private void insertAll(List<Event> events) {
+        for (var from = 0; from < events.size(); from += batchSize) {
+            insert(events.subList(from, Math.min(from + batchSize, events.size())));
+        }
+    }
+
+    private void insertOneByOne(List<Event> batch) {
+        for (var event : batch) {
+            try {
+                insert(List.of(event));
+            } catch (DataAccessException e) {
+                log.warn("feed writer: event of user {} dropped: {}", event.feed.getUserId(), e.getMessage());
+            }
+        }
+    }
+
+    private void insert(List<Event> events) {
+        var sql = new StringBuilder(INSERT);
+        var args = new Object[events.size() * 5];
+        for (var i = 0; i < events.size(); i++) {
+            var event = events.get(i);
+            sql.append(i == 0 ? ROW : ", " + ROW);
+            args[i * 5] = event.feed.getTimestamp();
+            args[i * 5 + 1] = event.feed.getUserId();
+            args[i * 5 + 2] = event.eventTypeId;
+            args[i * 5 + 3] = event.operationId;
+            args[i * 5 + 4] = event.feed.getEntityId();
+        }
+        sql.append(") ORDER BY event_id");
+        var pending = new Pending();
+        writeLock.lock();
+        try {
+            var ids = jdbcTemplate.getJdbcOperations().queryForList(sql.toString(), Long.class, args);
+            for (var i = 0; i < events.size(); i++) {
+                var feed = events.get(i).feed;
+                feed.setEventId(ids.get(i));
+                pending.stored.add(feed);
+            }
+            synchronized (unpublished) {
+                unpublished.put(ids.get(0), pending);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            complete(pending, true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                complete(pending, status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    /**
+     * Publishes every completed insert up to the first one whose transaction is still open.
+     */
+    private void complete(Pending pending, boolean committed) {
+        synchronized (unpublished) {
+            pending.completed = true;
+            pending.committed = committed;
+            while (!unpublished.isEmpty() && unpublished.firstEntry().getValue().completed) {
+                var first = unpublished.pollFirstEntry().getValue();
+                if (first.committed) {
+                    recentFeed.append(first.stored);
+                    eventPublisher.publishEvent(new FeedStoredEvent(first.stored));
+                }
+            }
+        }
+    }
+
+    private static class Pending {
+        private final List<Feed> stored = new ArrayList<>();
+        private boolean completed;
+        private boolean committed;
+    }
+
+    private static class Event {
+        private final Feed feed;
+        private final long eventTypeId;
+        private final long operationId;
+
+        Event(Feed feed, long eventTypeId, long operationId) {
+            this.feed = feed;
+            this.eventTypeId = eventTypeId;
+            this.operationId = operationId;
+        }
+    }
+}
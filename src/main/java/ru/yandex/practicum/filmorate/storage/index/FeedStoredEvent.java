@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.Value;
+import ru.yandex.practicum.filmorate.model.Feed;
+
+import java.util.List;
+
+/**
+ * Feed events just written to the feed table, in event id order and with their ids set.
+ */
+@Value
+public class FeedStoredEvent {
+    List<Feed> events;
+}
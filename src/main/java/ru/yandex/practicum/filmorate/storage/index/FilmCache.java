@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.CacheStatistics;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of fully loaded films by id, evicted by W-TinyLFU and expired after a fixed time.
+ * Callers get their own copy, so changing a returned film never touches the cached one.
+ * Invalidation is repeated when the transaction ends so a concurrent read cannot keep the old state.
+ */
+@Component
+public class FilmCache {
+
+    private final Cache<Long, Film> cache;
+
+    public FilmCache(@Value("${filmorate.film-cache.max-entries:1000}") long maxEntries,
+                     @Value("${filmorate.film-cache.ttl:10m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached film or loads it, missing films are not cached.
+     */
+    public Optional<Film> get(long filmId, Function<Long, Optional<Film>> loader) {
+        var film = cache.get(filmId, id -> loader.apply(id).map(FilmCache::copy).orElse(null));
+        return Optional.ofNullable(film).map(FilmCache::copy);
+    }
+
+    public void invalidate(long filmId) {
+        cache.invalidate(filmId);
+        afterCommit(() -> cache.invalidate(filmId));
+    }
+
+    public void invalidateAll(Collection<Long> filmIds) {
+        if (filmIds.isEmpty()) {
+            return;
+        }
+        cache.invalidateAll(filmIds);
+        afterCommit(() -> cache.invalidateAll(filmIds));
+    }
+
+    public CacheStatistics getStatistics() {
+        var stats = cache.stats();
+        return CacheStatistics.builder()
+                .size(cache.estimatedSize())
+                .hitCount(stats.hitCount())
+                .missCount(stats.missCount())
+                .hitRate(stats.hitRate())
+                .evictionCount(stats.evictionCount())
+                .loadCount(stats.loadCount())
+                .averageLoadMillis(stats.averageLoadPenalty() / TimeUnit.MILLISECONDS.toNanos(1))
+                .build();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    private static Film copy(Film film) {
+        var copy = new Film(film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(),
+                film.getDuration(), film.getMpa(), new LinkedHashSet<>(film.getGenres()), new LinkedHashSet<>());
+        for (var director : film.getDirectors()) {
+            copy.addDirector(new Director(director.getId(), director.getName()));
+        }
+        return copy;
+    }
+}
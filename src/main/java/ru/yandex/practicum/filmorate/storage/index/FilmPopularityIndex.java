@@ -0,0 +1,257 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory popularity index: like counter per film plus ordered sets of films
+ * overall, per genre, per release year and per genre and year.
+ * Top-K queries walk the first K entries of the matching set.
+ */
+@Component
+@RequiredArgsConstructor
+public class FilmPopularityIndex {
+
+    private static final Comparator<Entry> BY_POPULARITY = Comparator
+            .comparingLong((Entry e) -> e.likes).reversed()
+            .thenComparingLong(e -> e.filmId);
+
+    private final NamedParameterJdbcOperations jdbcTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final NavigableSet<Entry> all = new TreeSet<>(BY_POPULARITY);
+    private final Map<Integer, NavigableSet<Entry>> byGenre = new HashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> byYear = new HashMap<>();
+    private final Map<Long, NavigableSet<Entry>> byGenreAndYear = new HashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        Map<Long, Entry> loaded = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT id, release_date, like_count FROM film",
+                resultSet -> {
+                    var releaseDate = resultSet.getDate("release_date");
+                    var entry = new Entry(resultSet.getLong("id"),
+                            releaseDate == null ? null : releaseDate.toLocalDate().getYear(),
+                            new int[0]);
+                    entry.likes = resultSet.getLong("like_count");
+                    loaded.put(entry.filmId, entry);
+                });
+        Map<Long, List<Integer>> genres = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, genre_id FROM film_genre",
+                resultSet -> {
+                    genres.computeIfAbsent(resultSet.getLong("film_id"), id -> new ArrayList<>())
+                            .add(resultSet.getInt("genre_id"));
+                });
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            all.clear();
+            byGenre.clear();
+            byYear.clear();
+            byGenreAndYear.clear();
+            for (var entry : loaded.values()) {
+                entry.genreIds = toArray(genres.getOrDefault(entry.filmId, List.of()));
+                link(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a film or replaces its release year and genres, keeping the like counter.
+     */
+    public void put(long filmId, LocalDate releaseDate, Collection<Integer> genreIds) {
+        var year = releaseDate == null ? null : releaseDate.getYear();
+        lock.writeLock().lock();
+        try {
+            var old = entries.get(filmId);
+            var entry = new Entry(filmId, year, toArray(genreIds));
+            if (old != null) {
+                unlink(old);
+                entry.likes = old.likes;
+            }
+            link(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long filmId) {
+        lock.writeLock().lock();
+        try {
+            var entry = entries.get(filmId);
+            if (entry != null) {
+                unlink(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addLikes(long filmId, long delta) {
+        lock.writeLock().lock();
+        try {
+            var entry = entries.get(filmId);
+            if (entry == null) {
+                return;
+            }
+            unlink(entry);
+            entry.likes = Math.max(0, entry.likes + delta);
+            link(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long getLikes(long filmId) {
+        lock.readLock().lock();
+        try {
+            var entry = entries.get(filmId);
+            return entry == null ? 0 : entry.likes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(long filmId) {
+        lock.readLock().lock();
+        try {
+            return entries.containsKey(filmId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns ids of the most liked films, optionally limited to a genre and/or a release year.
+     */
+    public List<Long> top(int count, Integer genreId, Integer year) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> source;
+            if (genreId != null && year != null) {
+                source = byGenreAndYear.get(genreAndYear(genreId, year));
+            } else if (genreId != null) {
+                source = byGenre.get(genreId);
+            } else if (year != null) {
+                source = byYear.get(year);
+            } else {
+                source = all;
+            }
+            List<Long> result = new ArrayList<>(Math.min(count, source == null ? 0 : source.size()));
+            if (source == null) {
+                return result;
+            }
+            for (var entry : source) {
+                if (result.size() >= count) {
+                    break;
+                }
+                result.add(entry.filmId);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Orders the given film ids by likes, most liked first, unknown films are dropped.
+     */
+    public List<Long> rank(Collection<Long> filmIds) {
+        lock.readLock().lock();
+        try {
+            List<Entry> found = new ArrayList<>(filmIds.size());
+            for (var filmId : filmIds) {
+                var entry = entries.get(filmId);
+                if (entry != null) {
+                    found.add(entry);
+                }
+            }
+            found.sort(BY_POPULARITY);
+            List<Long> result = new ArrayList<>(found.size());
+            for (var entry : found) {
+                result.add(entry.filmId);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void link(Entry entry) {
+        entries.put(entry.filmId, entry);
+        all.add(entry);
+        for (var genreId : entry.genreIds) {
+            byGenre.computeIfAbsent(genreId, id -> new TreeSet<>(BY_POPULARITY)).add(entry);
+            if (entry.year != null) {
+                byGenreAndYear.computeIfAbsent(genreAndYear(genreId, entry.year), id -> new TreeSet<>(BY_POPULARITY))
+                        .add(entry);
+            }
+        }
+        if (entry.year != null) {
+            byYear.computeIfAbsent(entry.year, id -> new TreeSet<>(BY_POPULARITY)).add(entry);
+        }
+    }
+
+    private void unlink(Entry entry) {
+        entries.remove(entry.filmId);
+        all.remove(entry);
+        for (var genreId : entry.genreIds) {
+            removeFrom(byGenre, genreId, entry);
+            if (entry.year != null) {
+                removeFrom(byGenreAndYear, genreAndYear(genreId, entry.year), entry);
+            }
+        }
+        if (entry.year != null) {
+            removeFrom(byYear, entry.year, entry);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, NavigableSet<Entry>> sets, K key, Entry entry) {
+        var set = sets.get(key);
+        if (set != null) {
+            set.remove(entry);
+            if (set.isEmpty()) {
+                sets.remove(key);
+            }
+        }
+    }
+
+    private static long genreAndYear(int genreId, int year) {
+        return ((long) genreId << 32) | (year & 0xFFFFFFFFL);
+    }
+
+    private static int[] toArray(Collection<Integer> genreIds) {
+        return genreIds == null ? new int[0] : genreIds.stream().mapToInt(Integer::intValue).distinct().toArray();
+    }
+
+    private static class Entry {
+        private final long filmId;
+        private final Integer year;
+        private int[] genreIds;
+        private long likes;
+
+        Entry(long filmId, Integer year, int[] genreIds) {
+            this.filmId = filmId;
+            this.year = year;
+            this.genreIds = genreIds;
+        }
+    }
+}
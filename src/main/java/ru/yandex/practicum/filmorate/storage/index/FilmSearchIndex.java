@@ -0,0 +1,265 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index over film titles and director names for case-insensitive substring search.
+ * A query of three or more characters intersects the posting lists of its trigrams and checks
+ * the remaining candidates, shorter queries scan the names.
+ */
+@Component
+@RequiredArgsConstructor
+public class FilmSearchIndex {
+
+    private static final int GRAM = 3;
+
+    private final NamedParameterJdbcOperations jdbcTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Names films = new Names();
+    private final Names directors = new Names();
+    private final Map<Long, Set<Long>> directorsByFilm = new HashMap<>();
+    private final Map<Long, Set<Long>> filmsByDirector = new HashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        Map<Long, String> filmNames = new HashMap<>();
+        jdbcTemplate.query("SELECT id, name FROM film",
+                resultSet -> {
+                    filmNames.put(resultSet.getLong("id"), resultSet.getString("name"));
+                });
+        Map<Long, String> directorNames = new HashMap<>();
+        jdbcTemplate.query("SELECT id, name FROM director",
+                resultSet -> {
+                    directorNames.put(resultSet.getLong("id"), resultSet.getString("name"));
+                });
+        Map<Long, Set<Long>> links = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, director_id FROM film_director",
+                resultSet -> {
+                    links.computeIfAbsent(resultSet.getLong("film_id"), id -> new HashSet<>())
+                            .add(resultSet.getLong("director_id"));
+                });
+        lock.writeLock().lock();
+        try {
+            films.clear();
+            directors.clear();
+            directorsByFilm.clear();
+            filmsByDirector.clear();
+            filmNames.forEach(films::put);
+            directorNames.forEach(directors::put);
+            links.forEach((filmId, directorIds) -> link(filmId, directorIds));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a film or replaces its title and directors.
+     */
+    public void putFilm(long filmId, String name, Collection<Long> directorIds) {
+        lock.writeLock().lock();
+        try {
+            films.put(filmId, name);
+            unlink(filmId);
+            link(filmId, directorIds);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            films.remove(filmId);
+            unlink(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putDirector(long directorId, String name) {
+        lock.writeLock().lock();
+        try {
+            directors.put(directorId, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDirector(long directorId) {
+        lock.writeLock().lock();
+        try {
+            directors.remove(directorId);
+            var filmIds = filmsByDirector.remove(directorId);
+            if (filmIds != null) {
+                for (var filmId : filmIds) {
+                    var directorIds = directorsByFilm.get(filmId);
+                    directorIds.remove(directorId);
+                    if (directorIds.isEmpty()) {
+                        directorsByFilm.remove(filmId);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Set<Long> findByDirector(long directorId) {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(filmsByDirector.getOrDefault(directorId, Set.of()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns ids of films whose title contains the query.
+     */
+    public Set<Long> findByTitle(String query) {
+        lock.readLock().lock();
+        try {
+            return films.find(query);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns ids of films with a director whose name contains the query.
+     */
+    public Set<Long> findByDirectorName(String query) {
+        lock.readLock().lock();
+        try {
+            Set<Long> result = new HashSet<>();
+            for (var directorId : directors.find(query)) {
+                result.addAll(filmsByDirector.getOrDefault(directorId, Set.of()));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void link(long filmId, Collection<Long> directorIds) {
+        for (var directorId : directorIds) {
+            directorsByFilm.computeIfAbsent(filmId, id -> new HashSet<>()).add(directorId);
+            filmsByDirector.computeIfAbsent(directorId, id -> new HashSet<>()).add(filmId);
+        }
+    }
+
+    private void unlink(long filmId) {
+        var directorIds = directorsByFilm.remove(filmId);
+        if (directorIds == null) {
+            return;
+        }
+        for (var directorId : directorIds) {
+            var filmIds = filmsByDirector.get(directorId);
+            filmIds.remove(filmId);
+            if (filmIds.isEmpty()) {
+                filmsByDirector.remove(directorId);
+            }
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> trigrams(String value) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            result.add(value.substring(i, i + GRAM));
+        }
+        return result;
+    }
+
+    /**
+     * Lower-cased names by id with trigram posting lists.
+     */
+    private static class Names {
+        private final Map<Long, String> names = new HashMap<>();
+        private final Map<String, Set<Long>> postings = new HashMap<>();
+
+        void put(long id, String name) {
+            remove(id);
+            var normalized = normalize(name);
+            names.put(id, normalized);
+            for (var trigram : trigrams(normalized)) {
+                postings.computeIfAbsent(trigram, key -> new HashSet<>()).add(id);
+            }
+        }
+
+        void remove(long id) {
+            var old = names.remove(id);
+            if (old == null) {
+                return;
+            }
+            for (var trigram : trigrams(old)) {
+                var ids = postings.get(trigram);
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+
+        void clear() {
+            names.clear();
+            postings.clear();
+        }
+
+        Set<Long> find(String query) {
+            var normalized = normalize(query);
+            Set<Long> result = new HashSet<>();
+            if (normalized.length() < GRAM) {
+                names.forEach((id, name) -> {
+                    if (name.contains(normalized)) {
+                        result.add(id);
+                    }
+                });
+                return result;
+            }
+            List<Set<Long>> lists = new ArrayList<>();
+            for (var trigram : trigrams(normalized)) {
+                var ids = postings.get(trigram);
+                if (ids == null) {
+                    return result;
+                }
+                lists.add(ids);
+            }
+            lists.sort(Comparator.comparingInt(Set::size));
+            for (var id : lists.get(0)) {
+                if (inAll(lists, id) && names.get(id).contains(normalized)) {
+                    result.add(id);
+                }
+            }
+            return result;
+        }
+
+        private static boolean inAll(List<Set<Long>> lists, long id) {
+            for (int i = 1; i < lists.size(); i++) {
+                if (!lists.get(i).contains(id)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Feed;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Fan-out-on-write timelines of the latest feed events of each user's friends, as event ids.
+ * A stored event is added to the timeline of every user who has its author as a friend, unless the author
+ * has more followers than filmorate.timeline.celebrity-followers: events of such authors are not fanned out
+ * and are read from the feed table together with the timeline. A timeline is built from the feed table
+ * on its first read and then kept up to date; timelines are written to friend_timeline periodically
+ * and on shutdown and loaded from it on startup.
+ */
+@Slf4j
+@Component
+public class FriendTimeline {
+
+    private final NamedParameterJdbcOperations jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SocialIndex socialIndex;
+    private final int capacity;
+    private final long celebrityFollowers;
+    private final Map<Long, Timeline> timelines = new ConcurrentHashMap<>();
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+
+    public FriendTimeline(NamedParameterJdbcOperations jdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          SocialIndex socialIndex,
+                          @Value("${filmorate.timeline.capacity:200}") int capacity,
+                          @Value("${filmorate.timeline.celebrity-followers:1000}") long celebrityFollowers) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.socialIndex = socialIndex;
+        this.capacity = capacity;
+        this.celebrityFollowers = celebrityFollowers;
+    }
+
+    @PostConstruct
+    public void load() {
+        jdbcTemplate.getJdbcOperations().query("SELECT user_id, event_id, author_id FROM friend_timeline", rs -> {
+            timelines.computeIfAbsent(rs.getLong("user_id"), id -> new Timeline())
+                    .add(rs.getLong("event_id"), rs.getLong("author_id"));
+        });
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isCelebrity(long userId) {
+        return socialIndex.getFollowerCount(userId) > celebrityFollowers;
+    }
+
+    public List<Long> getCelebrityFriends(long userId) {
+        return socialIndex.getFriends(userId).stream()
+                .filter(this::isCelebrity)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns ids of up to limit, at most capacity, latest events of the user's friends, in ascending order.
+     * The loader gets a user id and a row count and returns that many latest events of the user's friends.
+     */
+    public List<Long> find(long userId, int limit, BiFunction<Long, Integer, List<Feed>> loader) {
+        var timeline = timelines.computeIfAbsent(userId, id -> {
+            var built = new Timeline();
+            loader.apply(id, capacity).forEach(feed -> built.add(feed.getEventId(), feed.getUserId()));
+            changed.add(id);
+            return built;
+        });
+        return timeline.latest(limit);
+    }
+
+    @EventListener
+    public void onStored(FeedStoredEvent stored) {
+        for (var feed : stored.getEvents()) {
+            if (isCelebrity(feed.getUserId())) {
+                continue;
+            }
+            for (var followerId : socialIndex.getFollowers(feed.getUserId())) {
+                timelines.computeIfPresent(followerId, (id, timeline) -> {
+                    timeline.add(feed.getEventId(), feed.getUserId());
+                    changed.add(id);
+                    return timeline;
+                });
+            }
+        }
+    }
+
+    /**
+     * Adds the latest events of a new friend to a built timeline.
+     * The loader gets the friend id and a row count and returns that many latest events of the friend.
+     */
+    public void addFriend(long userId, long friendId, BiFunction<Long, Integer, List<Feed>> loader) {
+        if (isCelebrity(friendId)) {
+            return;
+        }
+        timelines.computeIfPresent(userId, (id, timeline) -> {
+            loader.apply(friendId, capacity).forEach(feed -> timeline.add(feed.getEventId(), feed.getUserId()));
+            changed.add(id);
+            return timeline;
+        });
+    }
+
+    public void removeFriend(long userId, long friendId) {
+        timelines.computeIfPresent(userId, (id, timeline) -> {
+            timeline.removeAuthor(friendId);
+            changed.add(id);
+            return timeline;
+        });
+    }
+
+    /**
+     * Drops the user's timeline, its stored rows go with the user, and the user's events from the other
+     * timelines, as they are no longer in the feed table. All timelines are scanned: by the time this runs
+     * the user's followers are already gone from the social index.
+     */
+    public void removeUser(long userId) {
+        timelines.remove(userId);
+        changed.remove(userId);
+        timelines.forEach((id, timeline) -> {
+            if (timeline.removeAuthor(userId)) {
+                changed.add(id);
+            }
+        });
+    }
+
+    /**
+     * Replaces the stored rows of every timeline changed since the last run.
+     * Timelines that fail to write are retried on the next run.
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${filmorate.timeline.persist-interval-ms:60000}")
+    public void persist() {
+        if (changed.isEmpty()) {
+            return;
+        }
+        List<Long> userIds = new ArrayList<>(changed);
+        changed.removeAll(userIds);
+        List<SqlParameterSource> rows = new ArrayList<>();
+        for (var userId : userIds) {
+            var timeline = timelines.get(userId);
+            if (timeline != null) {
+                timeline.forEach((eventId, authorId) -> rows.add(new MapSqlParameterSource()
+                        .addValue("user_id", userId)
+                        .addValue("event_id", eventId)
+                        .addValue("author_id", authorId)));
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update("DELETE FROM friend_timeline WHERE user_id IN (:ids)",
+                        new MapSqlParameterSource("ids", userIds));
+                jdbcTemplate.batchUpdate("INSERT INTO friend_timeline(user_id, event_id, author_id) " +
+                                "SELECT id, :event_id, :author_id FROM users WHERE id = :user_id",
+                        rows.toArray(SqlParameterSource[]::new));
+            });
+            log.debug("friend timeline: {} timelines written", userIds.size());
+        } catch (RuntimeException e) {
+            log.warn("friend timeline: writing {} timelines failed", userIds.size(), e);
+            changed.addAll(userIds);
+        }
+    }
+
+    private class Timeline {
+        private final TreeMap<Long, Long> authorByEventId = new TreeMap<>();
+
+        synchronized void add(long eventId, long authorId) {
+            authorByEventId.put(eventId, authorId);
+            if (authorByEventId.size() > capacity) {
+                authorByEventId.pollFirstEntry();
+            }
+        }
+
+        synchronized boolean removeAuthor(long authorId) {
+            return authorByEventId.values().removeIf(id -> id == authorId);
+        }
+
+        synchronized List<Long> latest(int limit) {
+            List<Long> result = new ArrayList<>(Math.min(limit, authorByEventId.size()));
+            for (var eventId : authorByEventId.descendingKeySet()) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                result.add(eventId);
+            }
+            Collections.reverse(result);
+            return result;
+        }
+
+        synchronized void forEach(BiConsumer<Long, Long> action) {
+            authorByEventId.forEach(action);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for likes, off unless filmorate.likes.write-behind is set.
+ * Likes and unlikes are applied to the popularity and social indexes at once, so every read path
+ * sees them, and are written to film_likes in batches. Only operations that change the stored
+ * state are kept, a like followed by an unlike of the same film by the same user leaves nothing.
+ * With REQUEST durability the calling thread flushes before returning, concurrent callers share
+ * one batch. With GROUP durability the buffer is flushed every flush interval or flush size
+ * operations, and up to one interval of likes is lost if the process dies. A flush runs in its own
+ * transaction, so it never joins the transaction of the caller that triggered it.
+ */
+@Slf4j
+@Component
+public class LikeBuffer {
+
+    public enum Durability {
+        REQUEST,
+        GROUP
+    }
+
+    private static final int STRIPES = 16;
+
+    private final NamedParameterJdbcOperations jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FilmPopularityIndex popularityIndex;
+    private final SocialIndex socialIndex;
+    private final boolean enabled;
+    private final Durability durability;
+    private final int flushSize;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Lock flushLock = new ReentrantLock();
+
+    public LikeBuffer(NamedParameterJdbcOperations jdbcTemplate,
+                      PlatformTransactionManager transactionManager,
+                      FilmPopularityIndex popularityIndex,
+                      SocialIndex socialIndex,
+                      @Value("${filmorate.likes.write-behind:false}") boolean enabled,
+                      @Value("${filmorate.likes.durability:GROUP}") Durability durability,
+                      @Value("${filmorate.likes.flush-size:1000}") int flushSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.popularityIndex = popularityIndex;
+        this.socialIndex = socialIndex;
+        this.enabled = enabled;
+        this.durability = durability;
+        this.flushSize = flushSize;
+        for (var i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void like(long filmId, long userId) {
+        record(filmId, userId, true);
+    }
+
+    public void unlike(long filmId, long userId) {
+        record(filmId, userId, false);
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.likes.flush-interval-ms:50}")
+    public void flushScheduled() {
+        if (enabled && pending.get() > 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes all buffered operations in one transaction.
+     * Operations that fail to write are put back unless a newer one for the same pair arrived.
+     */
+    @PreDestroy
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<Key, Boolean> batch = new HashMap<>();
+            for (var stripe : stripes) {
+                stripe.lock.lock();
+                try {
+                    batch.putAll(stripe.operations);
+                    pending.addAndGet(-stripe.operations.size());
+                    stripe.operations.clear();
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(batch));
+            } catch (RuntimeException e) {
+                log.warn("like buffer: flush of {} operations failed", batch.size(), e);
+                batch.forEach(this::restore);
+                throw e;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void record(long filmId, long userId, boolean like) {
+        if (like && !popularityIndex.contains(filmId)) {
+            throw new NotFoundException(String.format("film with id %d not found", filmId));
+        }
+        var key = new Key(filmId, userId);
+        var stripe = stripes[Math.floorMod(key.hashCode(), STRIPES)];
+        stripe.lock.lock();
+        try {
+            if (socialIndex.hasLike(filmId, userId) == like) {
+                return;
+            }
+            if (stripe.operations.remove(key) != null) {
+                pending.decrementAndGet();
+            } else {
+                stripe.operations.put(key, like);
+                pending.incrementAndGet();
+            }
+            if (like) {
+                popularityIndex.addLikes(filmId, 1);
+                socialIndex.addLike(filmId, userId);
+            } else {
+                popularityIndex.addLikes(filmId, -1);
+                socialIndex.removeLike(filmId, userId);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        if (durability == Durability.REQUEST || pending.get() >= flushSize) {
+            flush();
+        }
+    }
+
+    private void restore(Key key, boolean like) {
+        var stripe = stripes[Math.floorMod(key.hashCode(), STRIPES)];
+        stripe.lock.lock();
+        try {
+            if (stripe.operations.remove(key) != null) {
+                pending.decrementAndGet();
+            } else {
+                stripe.operations.put(key, like);
+                pending.incrementAndGet();
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private void write(Map<Key, Boolean> batch) {
+        List<Key> likes = new ArrayList<>();
+        List<Key> unlikes = new ArrayList<>();
+        batch.forEach((key, like) -> (like ? likes : unlikes).add(key));
+        Map<Long, Long> deltas = new HashMap<>();
+        var inserted = jdbcTemplate.batchUpdate("INSERT INTO film_likes(film_id, user_id) " +
+                "SELECT f.id, u.id FROM film AS f JOIN users AS u ON u.id = :user_id " +
+                "WHERE f.id = :film_id AND NOT EXISTS " +
+                "(SELECT 1 FROM film_likes WHERE film_id = :film_id AND user_id = :user_id)", toParameters(likes));
+        for (var i = 0; i < inserted.length; i++) {
+            if (inserted[i] > 0) {
+                deltas.merge(likes.get(i).filmId, 1L, Long::sum);
+            }
+        }
+        var deleted = jdbcTemplate.batchUpdate(
+                "DELETE FROM film_likes WHERE film_id = :film_id AND user_id = :user_id", toParameters(unlikes));
+        for (var i = 0; i < deleted.length; i++) {
+            if (deleted[i] > 0) {
+                deltas.merge(unlikes.get(i).filmId, -1L, Long::sum);
+            }
+        }
+        jdbcTemplate.batchUpdate("UPDATE film SET like_count = like_count + :delta WHERE id = :film_id",
+                deltas.entrySet().stream()
+                        .filter(delta -> delta.getValue() != 0)
+                        .map(delta -> new MapSqlParameterSource()
+                                .addValue("film_id", delta.getKey())
+                                .addValue("delta", delta.getValue()))
+                        .toArray(SqlParameterSource[]::new));
+        log.debug("like buffer: {} likes and {} unlikes written", likes.size(), unlikes.size());
+    }
+
+    private static SqlParameterSource[] toParameters(List<Key> keys) {
+        return keys.stream()
+                .map(key -> new MapSqlParameterSource()
+                        .addValue("film_id", key.filmId)
+                        .addValue("user_id", key.userId))
+                .toArray(SqlParameterSource[]::new);
+    }
+
+    private static class Stripe {
+        private final Lock lock = new ReentrantLock();
+        private final Map<Key, Boolean> operations = new HashMap<>();
+    }
+
+    private static class Key {
+        private final long filmId;
+        private final long userId;
+
+        Key(long filmId, long userId) {
+            this.filmId = filmId;
+            this.userId = userId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            var key = (Key) o;
+            return filmId == key.filmId && userId == key.userId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(filmId, userId);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Feed;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+
+/**
+ * Ring buffer of the most recent feed events per user, for a bounded number of users.
+ * It answers the latest page of a feed and reads after an event id it still holds; a read starting
+ * below the ring, such as the first page of a long feed paged from the start, goes to the database.
+ * A ring is loaded from the database on first read and then appended to by the feed writer.
+ * The writer appends through computeIfPresent, which waits for a ring being loaded,
+ * so an event committed during the load is either in the loaded rows or appended after.
+ * Events are kept by event id, and an event appended after a later one is put in its place:
+ * a transaction holding a smaller id may commit after the ring was loaded with a larger one.
+ */
+@Component
+public class RecentFeedCache {
+
+    private final int capacity;
+    private final Cache<Long, Ring> rings;
+
+    public RecentFeedCache(@Value("${filmorate.feed.recent-events:50}") int capacity,
+                           @Value("${filmorate.feed.recent-users:10000}") long maxUsers) {
+        this.capacity = capacity;
+        this.rings = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .build();
+    }
+
+    /**
+     * Returns up to limit events after the given id if the ring holds all of them.
+     * The loader gets a user id and a row count and returns that many latest events, oldest first.
+     */
+    public Optional<List<Feed>> find(long userId, long afterEventId, int limit,
+                                     BiFunction<Long, Integer, List<Feed>> loader) {
+        var ring = rings.get(userId, id -> new Ring(capacity, loader.apply(id, capacity)));
+        return ring.after(afterEventId, limit);
+    }
+
+    /**
+     * Returns the latest limit events, oldest first, if the ring holds all of them.
+     * The loader gets a user id and a row count and returns that many latest events, oldest first.
+     */
+    public Optional<List<Feed>> findLatest(long userId, int limit, BiFunction<Long, Integer, List<Feed>> loader) {
+        var ring = rings.get(userId, id -> new Ring(capacity, loader.apply(id, capacity)));
+        return ring.latest(limit);
+    }
+
+    /**
+     * Appends stored events, in event id order, to the rings already loaded.
+     */
+    public void append(List<Feed> events) {
+        for (var event : events) {
+            rings.asMap().computeIfPresent(event.getUserId(), (id, ring) -> {
+                ring.add(event);
+                return ring;
+            });
+        }
+    }
+
+    public void evict(long userId) {
+        rings.invalidate(userId);
+    }
+
+    private static class Ring {
+        private final int capacity;
+        private final NavigableMap<Long, Feed> events = new TreeMap<>();
+        private long floor;
+
+        Ring(int capacity, List<Feed> loaded) {
+            this.capacity = capacity;
+            loaded.forEach(event -> events.put(event.getEventId(), event));
+            this.floor = loaded.size() < capacity ? 0 : loaded.get(0).getEventId() - 1;
+        }
+
+        /**
+         * Ignores events at or below the floor, the ring does not cover them, and ones it already holds.
+         */
+        synchronized void add(Feed event) {
+            if (event.getEventId() <= floor || events.containsKey(event.getEventId())) {
+                return;
+            }
+            events.put(event.getEventId(), event);
+            if (events.size() > capacity) {
+                floor = events.pollFirstEntry().getKey();
+            }
+        }
+
+        synchronized Optional<List<Feed>> after(long afterEventId, int limit) {
+            if (afterEventId < floor) {
+                return Optional.empty();
+            }
+            List<Feed> result = new ArrayList<>(Math.min(limit, events.size()));
+            for (var event : events.tailMap(afterEventId, false).values()) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                result.add(event);
+            }
+            return Optional.of(result);
+        }
+
+        synchronized Optional<List<Feed>> latest(int limit) {
+            if (limit > events.size() && floor > 0) {
+                return Optional.empty();
+            }
+            List<Feed> result = new ArrayList<>(Math.min(limit, events.size()));
+            for (var event : events.descendingMap().values()) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                result.add(event);
+            }
+            Collections.reverse(result);
+            return Optional.of(result);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Genres, MPA ratings, event types and operations are seed data from data.sql and never change
+ * at runtime, so they are read once at startup. Films share the cached Genre and Mpa instances,
+ * and feed rows map enum names to ids without extra queries.
+ */
+@Component
+public class ReferenceDataCache {
+
+    private final Map<Integer, Genre> genres;
+    private final Map<Integer, Mpa> ratings;
+    private final Map<EventType, Long> eventTypeIds = new EnumMap<>(EventType.class);
+    private final Map<Long, EventType> eventTypes = new HashMap<>();
+    private final Map<Operation, Long> operationIds = new EnumMap<>(Operation.class);
+    private final Map<Long, Operation> operations = new HashMap<>();
+
+    public ReferenceDataCache(NamedParameterJdbcOperations jdbcTemplate) {
+        Map<Integer, Genre> loadedGenres = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT id, name FROM genre ORDER BY id",
+                resultSet -> {
+                    var genre = new Genre(resultSet.getInt("id"), resultSet.getString("name"));
+                    loadedGenres.put(genre.getId(), genre);
+                });
+        genres = Collections.unmodifiableMap(loadedGenres);
+        Map<Integer, Mpa> loadedRatings = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT id, name FROM rating ORDER BY id",
+                resultSet -> {
+                    var mpa = new Mpa(resultSet.getInt("id"), resultSet.getString("name"));
+                    loadedRatings.put(mpa.getId(), mpa);
+                });
+        ratings = Collections.unmodifiableMap(loadedRatings);
+        jdbcTemplate.query("SELECT id, name FROM event_type",
+                resultSet -> {
+                    var eventType = EventType.valueOf(resultSet.getString("name"));
+                    eventTypeIds.put(eventType, resultSet.getLong("id"));
+                    eventTypes.put(resultSet.getLong("id"), eventType);
+                });
+        jdbcTemplate.query("SELECT id, name FROM operation",
+                resultSet -> {
+                    var operation = Operation.valueOf(resultSet.getString("name"));
+                    operationIds.put(operation, resultSet.getLong("id"));
+                    operations.put(resultSet.getLong("id"), operation);
+                });
+    }
+
+    public List<Genre> getGenres() {
+        return List.copyOf(genres.values());
+    }
+
+    public Optional<Genre> findGenre(int id) {
+        return Optional.ofNullable(genres.get(id));
+    }
+
+    /**
+     * Returns the shared genre instance, or a genre without a name if the id is not known.
+     */
+    public Genre getGenre(int id) {
+        var genre = genres.get(id);
+        return genre == null ? new Genre(id, null) : genre;
+    }
+
+    public List<Mpa> getRatings() {
+        return List.copyOf(ratings.values());
+    }
+
+    public Optional<Mpa> findMpa(int id) {
+        return Optional.ofNullable(ratings.get(id));
+    }
+
+    /**
+     * Returns the shared rating instance, or a rating without a name if the id is not known.
+     */
+    public Mpa getMpa(int id) {
+        var mpa = ratings.get(id);
+        return mpa == null ? new Mpa(id, null) : mpa;
+    }
+
+    public Optional<Long> findEventTypeId(String name) {
+        return findByName(EventType.class, name).map(eventTypeIds::get);
+    }
+
+    public EventType getEventType(long id) {
+        return eventTypes.get(id);
+    }
+
+    public Optional<Long> findOperationId(String name) {
+        return findByName(Operation.class, name).map(operationIds::get);
+    }
+
+    public Operation getOperation(long id) {
+        return operations.get(id);
+    }
+
+    private static <E extends Enum<E>> Optional<E> findByName(Class<E> type, String name) {
+        for (var value : type.getEnumConstants()) {
+            if (value.name().equals(name)) {
+                return Optional.of(value);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,183 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory ranking of reviews by useful score, overall and per film, most useful first and then by id.
+ * Pages walk the matching set from its start, an offset or the position of a given review.
+ * Useful changes made inside a transaction that rolls back are taken back.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReviewRankIndex {
+
+    private static final Comparator<Entry> BY_USEFUL = Comparator
+            .comparingLong((Entry e) -> e.useful).reversed()
+            .thenComparingLong(e -> e.reviewId);
+
+    private final NamedParameterJdbcOperations jdbcTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final NavigableSet<Entry> all = new TreeSet<>(BY_USEFUL);
+    private final Map<Long, NavigableSet<Entry>> byFilm = new HashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        List<Entry> loaded = new ArrayList<>();
+        jdbcTemplate.getJdbcOperations().query("SELECT id, film_id, useful FROM review",
+                resultSet -> {
+                    var entry = new Entry(resultSet.getLong("id"), resultSet.getLong("film_id"));
+                    entry.useful = resultSet.getLong("useful");
+                    loaded.add(entry);
+                });
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            all.clear();
+            byFilm.clear();
+            loaded.forEach(this::link);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(long reviewId, long filmId) {
+        lock.writeLock().lock();
+        try {
+            if (!entries.containsKey(reviewId)) {
+                link(new Entry(reviewId, filmId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long reviewId) {
+        lock.writeLock().lock();
+        try {
+            var entry = entries.get(reviewId);
+            if (entry != null) {
+                unlink(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addUseful(long reviewId, long delta) {
+        move(reviewId, delta);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        move(reviewId, -delta);
+                    }
+                }
+            });
+        }
+    }
+
+    public long getUseful(long reviewId) {
+        lock.readLock().lock();
+        try {
+            var entry = entries.get(reviewId);
+            return entry == null ? 0 : entry.useful;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns ids of up to count reviews, of a film if filmId is set, most useful first.
+     * The page starts after the review afterId if it is set, an unknown afterId gives an empty page,
+     * and then skips offset reviews.
+     */
+    public List<Long> page(Long filmId, Long afterId, long offset, int count) {
+        lock.readLock().lock();
+        try {
+            var source = filmId == null ? all : byFilm.get(filmId);
+            if (source == null) {
+                return List.of();
+            }
+            if (afterId != null) {
+                var after = entries.get(afterId);
+                if (after == null || (filmId != null && after.filmId != filmId)) {
+                    return List.of();
+                }
+                source = source.tailSet(after, false);
+            }
+            var iterator = source.iterator();
+            for (var skipped = 0L; skipped < offset && iterator.hasNext(); skipped++) {
+                iterator.next();
+            }
+            List<Long> result = new ArrayList<>();
+            while (result.size() < count && iterator.hasNext()) {
+                result.add(iterator.next().reviewId);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void move(long reviewId, long delta) {
+        lock.writeLock().lock();
+        try {
+            var entry = entries.get(reviewId);
+            if (entry == null) {
+                return;
+            }
+            unlink(entry);
+            entry.useful += delta;
+            link(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void link(Entry entry) {
+        entries.put(entry.reviewId, entry);
+        all.add(entry);
+        byFilm.computeIfAbsent(entry.filmId, id -> new TreeSet<>(BY_USEFUL)).add(entry);
+    }
+
+    private void unlink(Entry entry) {
+        entries.remove(entry.reviewId);
+        all.remove(entry);
+        var film = byFilm.get(entry.filmId);
+        if (film != null) {
+            film.remove(entry);
+            if (film.isEmpty()) {
+                byFilm.remove(entry.filmId);
+            }
+        }
+    }
+
+    private static class Entry {
+        private final long reviewId;
+        private final long filmId;
+        private long useful;
+
+        Entry(long reviewId, long filmId) {
+            this.reviewId = reviewId;
+            this.filmId = filmId;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind counters of review.useful changes, off unless filmorate.reviews.useful-write-behind is set.
+ * Votes add their delta to a LongAdder of the review instead of updating the review row, so concurrent votes
+ * on one review do not wait for its row lock. The merged deltas are written every flush interval;
+ * readers add the pending delta to the stored value and run under a read lock, so a flush in progress
+ * is never seen twice or not at all. A delta added inside a transaction that rolls back is taken back.
+ * Up to one interval of useful changes is lost if the process dies.
+ */
+@Slf4j
+@Component
+public class ReviewUsefulCounters {
+
+    private final NamedParameterJdbcOperations jdbcTemplate;
+    private final boolean enabled;
+    private final Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    public ReviewUsefulCounters(NamedParameterJdbcOperations jdbcTemplate,
+                                @Value("${filmorate.reviews.useful-write-behind:false}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void add(long reviewId, long delta) {
+        adder(reviewId).add(delta);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        adder(reviewId).add(-delta);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs a read of stored useful values that adds the pending deltas, not overlapping a flush.
+     */
+    public <T> T read(Supplier<T> reader) {
+        flushLock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    public long getPending(long reviewId) {
+        var adder = pending.get(reviewId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    public void remove(long reviewId) {
+        pending.remove(reviewId);
+    }
+
+    /**
+     * Writes the pending deltas, deltas that fail to write are added back.
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${filmorate.reviews.useful-flush-interval-ms:1000}")
+    public void flush() {
+        flushLock.writeLock().lock();
+        try {
+            write();
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    private void write() {
+        Map<Long, Long> deltas = new HashMap<>();
+        pending.forEach((reviewId, adder) -> {
+            var delta = adder.sumThenReset();
+            if (delta != 0) {
+                deltas.put(reviewId, delta);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate("UPDATE review SET useful = useful + :delta WHERE id = :id",
+                    deltas.entrySet().stream()
+                            .map(delta -> new MapSqlParameterSource()
+                                    .addValue("id", delta.getKey())
+                                    .addValue("delta", delta.getValue()))
+                            .toArray(SqlParameterSource[]::new));
+        } catch (RuntimeException e) {
+            log.warn("review counters: flush of {} reviews failed", deltas.size(), e);
+            deltas.forEach((reviewId, delta) -> adder(reviewId).add(delta));
+            throw e;
+        }
+    }
+
+    private LongAdder adder(long reviewId) {
+        return pending.computeIfAbsent(reviewId, id -> new LongAdder());
+    }
+}
@@ -0,0 +1,332 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory like and friend graph as compressed bitmaps: liked films per user, users per film,
+ * friends per user and their reverse. Common films and common friends are bitmap intersections.
+ * Recommendations come from the most similar users by Jaccard index of their like sets.
+ * Neighbour lists are computed on first use and dropped when a like gives the user new candidates.
+ */
+@Component
+public class SocialIndex {
+
+    private final NamedParameterJdbcOperations jdbcTemplate;
+    private final int neighbourCount;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Roaring64Bitmap> filmsByUser = new HashMap<>();
+    private final Map<Long, Roaring64Bitmap> usersByFilm = new HashMap<>();
+    private final Map<Long, Roaring64Bitmap> friendsByUser = new HashMap<>();
+    private final Map<Long, Roaring64Bitmap> followersByUser = new HashMap<>();
+    private final Map<Long, List<Neighbour>> neighbours = new ConcurrentHashMap<>();
+
+    public SocialIndex(NamedParameterJdbcOperations jdbcTemplate,
+                       @Value("${filmorate.recommendations.neighbours:10}") int neighbourCount) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.neighbourCount = neighbourCount;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        Map<Long, Roaring64Bitmap> loadedFilmsByUser = new HashMap<>();
+        Map<Long, Roaring64Bitmap> loadedUsersByFilm = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, user_id FROM film_likes",
+                resultSet -> {
+                    var filmId = resultSet.getLong("film_id");
+                    var userId = resultSet.getLong("user_id");
+                    loadedFilmsByUser.computeIfAbsent(userId, id -> new Roaring64Bitmap()).addLong(filmId);
+                    loadedUsersByFilm.computeIfAbsent(filmId, id -> new Roaring64Bitmap()).addLong(userId);
+                });
+        Map<Long, Roaring64Bitmap> loadedFriendsByUser = new HashMap<>();
+        Map<Long, Roaring64Bitmap> loadedFollowersByUser = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, friend_id FROM friend",
+                resultSet -> {
+                    var userId = resultSet.getLong("user_id");
+                    var friendId = resultSet.getLong("friend_id");
+                    loadedFriendsByUser.computeIfAbsent(userId, id -> new Roaring64Bitmap()).addLong(friendId);
+                    loadedFollowersByUser.computeIfAbsent(friendId, id -> new Roaring64Bitmap()).addLong(userId);
+                });
+        lock.writeLock().lock();
+        try {
+            filmsByUser.clear();
+            usersByFilm.clear();
+            friendsByUser.clear();
+            followersByUser.clear();
+            neighbours.clear();
+            filmsByUser.putAll(loadedFilmsByUser);
+            usersByFilm.putAll(loadedUsersByFilm);
+            friendsByUser.putAll(loadedFriendsByUser);
+            followersByUser.putAll(loadedFollowersByUser);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addLike(long filmId, long userId) {
+        lock.writeLock().lock();
+        try {
+            invalidate(filmId, userId);
+            filmsByUser.computeIfAbsent(userId, id -> new Roaring64Bitmap()).addLong(filmId);
+            usersByFilm.computeIfAbsent(filmId, id -> new Roaring64Bitmap()).addLong(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeLike(long filmId, long userId) {
+        lock.writeLock().lock();
+        try {
+            invalidate(filmId, userId);
+            removeFrom(filmsByUser, userId, filmId);
+            removeFrom(usersByFilm, filmId, userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean hasLike(long filmId, long userId) {
+        lock.readLock().lock();
+        try {
+            var films = filmsByUser.get(userId);
+            return films != null && films.contains(filmId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void addFriend(long userId, long friendId) {
+        lock.writeLock().lock();
+        try {
+            friendsByUser.computeIfAbsent(userId, id -> new Roaring64Bitmap()).addLong(friendId);
+            followersByUser.computeIfAbsent(friendId, id -> new Roaring64Bitmap()).addLong(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFriend(long userId, long friendId) {
+        lock.writeLock().lock();
+        try {
+            removeFrom(friendsByUser, userId, friendId);
+            removeFrom(followersByUser, friendId, userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            var users = usersByFilm.remove(filmId);
+            if (users == null) {
+                return;
+            }
+            users.forEach(userId -> removeFrom(filmsByUser, userId, filmId));
+            neighbours.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeUser(long userId) {
+        lock.writeLock().lock();
+        try {
+            var friends = friendsByUser.remove(userId);
+            if (friends != null) {
+                friends.forEach(friendId -> removeFrom(followersByUser, friendId, userId));
+            }
+            var followers = followersByUser.remove(userId);
+            if (followers != null) {
+                followers.forEach(followerId -> removeFrom(friendsByUser, followerId, userId));
+            }
+            var films = filmsByUser.remove(userId);
+            neighbours.remove(userId);
+            if (films == null) {
+                return;
+            }
+            films.forEach(filmId -> {
+                usersByFilm.get(filmId).forEach(neighbours::remove);
+                removeFrom(usersByFilm, filmId, userId);
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns ids of the user's friends, in ascending order.
+     */
+    public List<Long> getFriends(long userId) {
+        lock.readLock().lock();
+        try {
+            return toList(friendsByUser.get(userId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns ids of users who have the user as a friend, in ascending order.
+     */
+    public List<Long> getFollowers(long userId) {
+        lock.readLock().lock();
+        try {
+            return toList(followersByUser.get(userId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getFollowerCount(long userId) {
+        lock.readLock().lock();
+        try {
+            var followers = followersByUser.get(userId);
+            return followers == null ? 0 : followers.getLongCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns ids of films liked by both users.
+     */
+    public List<Long> commonFilms(long userId, long otherId) {
+        lock.readLock().lock();
+        try {
+            return intersect(filmsByUser.get(userId), filmsByUser.get(otherId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns ids of users who are friends of both users, in ascending order.
+     */
+    public List<Long> commonFriends(long userId, long otherId) {
+        lock.readLock().lock();
+        try {
+            return intersect(friendsByUser.get(userId), friendsByUser.get(otherId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns ids of films liked by the most similar users and not by the user,
+     * ordered by the summed similarity of the users who liked them.
+     */
+    public List<Long> recommend(long userId) {
+        lock.readLock().lock();
+        try {
+            var liked = filmsByUser.get(userId);
+            if (liked == null) {
+                return List.of();
+            }
+            Map<Long, Double> scores = new HashMap<>();
+            for (var neighbour : neighbours.computeIfAbsent(userId, this::findNeighbours)) {
+                var neighbourLiked = filmsByUser.get(neighbour.userId);
+                if (neighbourLiked == null) {
+                    continue;
+                }
+                Roaring64Bitmap.andNot(neighbourLiked, liked)
+                        .forEach(filmId -> scores.merge(filmId, neighbour.similarity, Double::sum));
+            }
+            List<Map.Entry<Long, Double>> ranked = new ArrayList<>(scores.entrySet());
+            ranked.sort(Map.Entry.<Long, Double>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey()));
+            List<Long> result = new ArrayList<>(ranked.size());
+            for (var entry : ranked) {
+                result.add(entry.getKey());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Neighbour> findNeighbours(long userId) {
+        var liked = filmsByUser.get(userId);
+        var candidates = new Roaring64Bitmap();
+        liked.forEach(filmId -> candidates.or(usersByFilm.get(filmId)));
+        candidates.removeLong(userId);
+        List<Neighbour> result = new ArrayList<>();
+        var likedCount = liked.getLongCardinality();
+        candidates.forEach(candidateId -> {
+            var candidateLiked = filmsByUser.get(candidateId);
+            var common = Roaring64Bitmap.andCardinality(liked, candidateLiked);
+            var union = likedCount + candidateLiked.getLongCardinality() - common;
+            result.add(new Neighbour(candidateId, (double) common / union));
+        });
+        result.sort(Comparator.comparingDouble((Neighbour n) -> n.similarity).reversed()
+                .thenComparingLong(n -> n.userId));
+        return result.size() > neighbourCount ? List.copyOf(result.subList(0, neighbourCount)) : result;
+    }
+
+    /**
+     * A like gives the user new candidates and the film's likers a new candidate, so their lists are dropped.
+     * Users sharing only other films with the user keep their lists with slightly stale similarities
+     * until their next drop, which keeps a like of a heavy user cheap.
+     */
+    private void invalidate(long filmId, long userId) {
+        if (neighbours.isEmpty()) {
+            return;
+        }
+        neighbours.remove(userId);
+        var users = usersByFilm.get(filmId);
+        if (users != null) {
+            users.forEach(neighbours::remove);
+        }
+    }
+
+    private static List<Long> intersect(Roaring64Bitmap first, Roaring64Bitmap second) {
+        if (first == null || second == null) {
+            return List.of();
+        }
+        List<Long> result = new ArrayList<>();
+        Roaring64Bitmap.and(first, second).forEach(result::add);
+        return result;
+    }
+
+    private static List<Long> toList(Roaring64Bitmap bitmap) {
+        if (bitmap == null) {
+            return List.of();
+        }
+        List<Long> result = new ArrayList<>();
+        bitmap.forEach(result::add);
+        return result;
+    }
+
+    private static void removeFrom(Map<Long, Roaring64Bitmap> bitmaps, long key, long value) {
+        var bitmap = bitmaps.get(key);
+        if (bitmap != null) {
+            bitmap.removeLong(value);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(key);
+            }
+        }
+    }
+
+    private static class Neighbour {
+        private final long userId;
+        private final double similarity;
+
+        Neighbour(long userId, double similarity) {
+            this.userId = userId;
+            this.similarity = similarity;
+        }
+    }
+}
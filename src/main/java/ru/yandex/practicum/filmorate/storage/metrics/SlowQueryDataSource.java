@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.storage.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Data source whose statements time every execution and pass it to the slow query log,
+ * with the statement's SQL and bound parameters, so statements of JdbcTemplate,
+ * NamedParameterJdbcTemplate and plain JDBC callers are all covered.
+ */
+public class SlowQueryDataSource extends DelegatingDataSource {
+
+    private final Supplier<SlowQueryLog> slowQueryLog;
+
+    public SlowQueryDataSource(DataSource targetDataSource, Supplier<SlowQueryLog> slowQueryLog) {
+        super(targetDataSource);
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+
+        ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            var result = SlowQueryDataSource.invoke(connection, method, args);
+            var name = method.getName();
+            var prepared = name.equals("prepareStatement") || name.equals("prepareCall");
+            if (result instanceof Statement && (prepared || name.equals("createStatement"))) {
+                var sql = prepared ? (String) args[0] : null;
+                return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{method.getReturnType()},
+                        new StatementHandler(connection, (Statement) result, sql));
+            }
+            return result;
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+        private final Connection connection;
+        private final Statement statement;
+        private final String sql;
+        private final Map<Integer, Object> parameters = new TreeMap<>();
+        private List<Object> firstBatchParameters = List.of();
+        private String firstBatchSql;
+        private int batchSize;
+
+        StatementHandler(Connection connection, Statement statement, String sql) {
+            this.connection = connection;
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            var name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                parameters.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            } else if (name.equals("addBatch")) {
+                if (batchSize++ == 0) {
+                    firstBatchParameters = new ArrayList<>(parameters.values());
+                    firstBatchSql = args == null ? sql : (String) args[0];
+                }
+            } else if (name.equals("clearBatch")) {
+                batchSize = 0;
+            } else if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            return SlowQueryDataSource.invoke(statement, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            var batch = method.getName().endsWith("Batch");
+            var start = System.nanoTime();
+            var result = SlowQueryDataSource.invoke(statement, method, args);
+            var nanos = System.nanoTime() - start;
+            var log = slowQueryLog.get();
+            if (log.isSlow(nanos)) {
+                if (batch && batchSize > 0) {
+                    log.record(connection, firstBatchSql, firstBatchParameters, batchSize, nanos);
+                } else if (!batch) {
+                    var executed = args != null && args.length > 0 ? (String) args[0] : sql;
+                    log.record(connection, executed, new ArrayList<>(parameters.values()), 0, nanos);
+                }
+            }
+            if (batch) {
+                batchSize = 0;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.storage.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.SlowQuery;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the filmorate.slow-query.top slowest statements that ran longer than filmorate.slow-query.threshold
+ * and logs each of them with its parameters and, with filmorate.slow-query.explain set, its plan. Queries are
+ * planned with EXPLAIN ANALYZE, which runs them once more on the same connection, statements that change data
+ * only with EXPLAIN.
+ */
+@Slf4j
+@Component
+public class SlowQueryLog {
+
+    private static final Comparator<SlowQuery> BY_DURATION = Comparator.comparingDouble(SlowQuery::getDurationMillis);
+
+    private final long thresholdNanos;
+    private final int top;
+    private final boolean explain;
+    private final PriorityQueue<SlowQuery> slowest = new PriorityQueue<>(BY_DURATION);
+
+    public SlowQueryLog(@Value("${filmorate.slow-query.threshold:200ms}") Duration threshold,
+                        @Value("${filmorate.slow-query.top:50}") int top,
+                        @Value("${filmorate.slow-query.explain:false}") boolean explain) {
+        this.thresholdNanos = threshold.toNanos();
+        this.top = top;
+        this.explain = explain;
+    }
+
+    public boolean isSlow(long nanos) {
+        return nanos >= thresholdNanos;
+    }
+
+    /**
+     * Records a statement that ran on the connection, it is only kept if it is slow.
+     */
+    public void record(Connection connection, String sql, List<Object> parameters, int batchSize, long nanos) {
+        if (!isSlow(nanos)) {
+            return;
+        }
+        var slowQuery = SlowQuery.builder()
+                .timestamp(System.currentTimeMillis())
+                .durationMillis((double) nanos / TimeUnit.MILLISECONDS.toNanos(1))
+                .sql(sql)
+                .parameters(parameters.stream().map(String::valueOf).collect(Collectors.toList()))
+                .batchSize(batchSize)
+                .plan(explain ? explain(connection, sql, parameters) : null)
+                .build();
+        log.warn("slow query: {} ms, batch {}, sql: {}, parameters: {}, plan: {}", slowQuery.getDurationMillis(),
+                batchSize, sql, slowQuery.getParameters(), slowQuery.getPlan());
+        synchronized (slowest) {
+            slowest.add(slowQuery);
+            if (slowest.size() > top) {
+                slowest.poll();
+            }
+        }
+    }
+
+    /**
+     * The kept statements, slowest first.
+     */
+    public List<SlowQuery> getSlowest() {
+        List<SlowQuery> result;
+        synchronized (slowest) {
+            result = new ArrayList<>(slowest);
+        }
+        result.sort(BY_DURATION.reversed());
+        return result;
+    }
+
+    private static String explain(Connection connection, String sql, List<Object> parameters) {
+        var statement = sql.trim().toUpperCase(Locale.ROOT);
+        var changesData = statement.contains("FINAL TABLE") || statement.contains("OLD TABLE")
+                || statement.contains("NEW TABLE");
+        String prefix;
+        if ((statement.startsWith("SELECT") || statement.startsWith("WITH")) && !changesData) {
+            prefix = "EXPLAIN ANALYZE ";
+        } else if (statement.startsWith("SELECT") || statement.startsWith("INSERT") || statement.startsWith("UPDATE")
+                || statement.startsWith("DELETE") || statement.startsWith("MERGE")) {
+            prefix = "EXPLAIN ";
+        } else {
+            return null;
+        }
+        try (var explainStatement = connection.prepareStatement(prefix + sql)) {
+            for (var i = 0; i < parameters.size(); i++) {
+                explainStatement.setObject(i + 1, parameters.get(i));
+            }
+            List<String> plan = new ArrayList<>();
+            try (var resultSet = explainStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.add(resultSet.getString(1));
+                }
+            }
+            return String.join("\n", plan);
+        } catch (SQLException e) {
+            log.debug("slow query: explain failed: {}", e.getMessage());
+            return null;
+        }
+    }
+}
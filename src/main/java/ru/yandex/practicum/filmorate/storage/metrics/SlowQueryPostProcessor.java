@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.storage.metrics;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps data sources in a SlowQueryDataSource, on by filmorate.slow-query.enabled.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.slow-query.enabled", havingValue = "true")
+public class SlowQueryPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<SlowQueryLog> slowQueryLog;
+
+    public SlowQueryPostProcessor(ObjectProvider<SlowQueryLog> slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof SlowQueryDataSource)) {
+            return new SlowQueryDataSource((DataSource) bean, slowQueryLog::getObject);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.storage.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Records every call of a storage method, tagged with the storage and method names:
+ * filmorate.storage.calls times it, filmorate.storage.rows counts the rows returned by methods
+ * returning a collection, map or optional, and filmorate.storage.errors counts the calls that threw.
+ * Calls and rows publish histogram buckets, so percentiles are computed across instances with
+ * histogram_quantile. Overloads of a method share its meters. The meters of a method
+ * are looked up once, on its first call.
+ */
+public class StorageMetricsInterceptor implements MethodInterceptor {
+
+    private static final double MAX_EXPECTED_ROWS = 100_000;
+
+    private final String storage;
+    private final Supplier<MeterRegistry> registry;
+    private final Map<Method, Meters> meters = new ConcurrentHashMap<>();
+
+    public StorageMetricsInterceptor(String storage, Supplier<MeterRegistry> registry) {
+        this.storage = storage;
+        this.registry = registry;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        var method = invocation.getMethod();
+        if (method.getDeclaringClass() == Object.class) {
+            return invocation.proceed();
+        }
+        var methodMeters = meters.computeIfAbsent(method, this::register);
+        var start = System.nanoTime();
+        try {
+            var result = invocation.proceed();
+            if (methodMeters.rows != null && result != null) {
+                methodMeters.rows.record(rows(result));
+            }
+            return result;
+        } catch (Throwable e) {
+            methodMeters.errors.increment();
+            throw e;
+        } finally {
+            methodMeters.calls.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Meters register(Method method) {
+        var meterRegistry = registry.get();
+        var calls = Timer.builder("filmorate.storage.calls")
+                .description("Storage method latency")
+                .tag("storage", storage)
+                .tag("method", method.getName())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        var errors = Counter.builder("filmorate.storage.errors")
+                .description("Storage method calls that threw")
+                .tag("storage", storage)
+                .tag("method", method.getName())
+                .register(meterRegistry);
+        DistributionSummary rows = null;
+        var type = method.getReturnType();
+        if (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type) || type == Optional.class) {
+            rows = DistributionSummary.builder("filmorate.storage.rows")
+                    .description("Rows returned by a storage method")
+                    .tag("storage", storage)
+                    .tag("method", method.getName())
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(1.0)
+                    .maximumExpectedValue(MAX_EXPECTED_ROWS)
+                    .register(meterRegistry);
+        }
+        return new Meters(calls, errors, rows);
+    }
+
+    private static long rows(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Map) {
+            return ((Map<?, ?>) result).size();
+        }
+        return ((Optional<?>) result).isPresent() ? 1 : 0;
+    }
+
+    private static class Meters {
+        private final Timer calls;
+        private final Counter errors;
+        private final DistributionSummary rows;
+
+        Meters(Timer calls, Counter errors, DistributionSummary rows) {
+            this.calls = calls;
+            this.errors = errors;
+            this.rows = rows;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.storage.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.ReviewStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.List;
+
+/**
+ * Adds a StorageMetricsInterceptor to every storage bean, on by filmorate.metrics.storage.enabled.
+ * When it is off this post processor is not registered and storages are called without any wrapping.
+ * Beans that are already Spring proxies, as the transactional storages are, get the interceptor
+ * as their first advice, the others are wrapped in a proxy of their storage interface.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.metrics.storage.enabled", havingValue = "true")
+public class StorageMetricsPostProcessor implements BeanPostProcessor {
+
+    private static final List<Class<?>> STORAGES = List.of(FilmStorage.class, UserStorage.class,
+            ReviewStorage.class, FeedStorage.class, DirectorStorage.class, GenreStorage.class, MpaStorage.class);
+
+    private final ObjectProvider<MeterRegistry> registry;
+
+    public StorageMetricsPostProcessor(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        for (var storage : STORAGES) {
+            if (!storage.isInstance(bean)) {
+                continue;
+            }
+            var interceptor = new StorageMetricsInterceptor(storage.getSimpleName(), registry::getObject);
+            if (bean instanceof Advised && !((Advised) bean).isFrozen()) {
+                ((Advised) bean).addAdvice(0, interceptor);
+                return bean;
+            }
+            var proxyFactory = new ProxyFactory();
+            proxyFactory.setTarget(bean);
+            proxyFactory.addInterface(storage);
+            proxyFactory.addAdvice(interceptor);
+            return proxyFactory.getProxy(bean.getClass().getClassLoader());
+        }
+        return bean;
+    }
+}
@@ -25,11 +25,14 @@ CREATE TABLE IF NOT EXISTS film (
     release_date date,
     duration integer,
     rating_id integer,
+    like_count bigint NOT NULL DEFAULT 0,
     CONSTRAINT film_duration_min CHECK (duration > 0),
     CONSTRAINT film_date_start CHECK (release_date > '1895-12-28'),
     CONSTRAINT fk_film_rating FOREIGN KEY(rating_id) REFERENCES rating(id)
 );
 
+CREATE INDEX IF NOT EXISTS film_like_count_idx ON film(like_count);
+
 CREATE TABLE IF NOT EXISTS director (
     id bigint generated by default as identity primary key,
     name varchar(50) NOT NULL
@@ -102,4 +105,13 @@ CREATE TABLE IF NOT EXISTS feed (
     CONSTRAINT fk_user_id_id FOREIGN KEY(user_id) REFERENCES users(id) ON DELETE CASCADE,
     CONSTRAINT fk_event_type FOREIGN KEY(event_type) REFERENCES event_type(id),
     CONSTRAINT fk_operation FOREIGN KEY(operation) REFERENCES operation(id)
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS feed_user_event_idx ON feed(user_id, event_id);
+
+CREATE TABLE IF NOT EXISTS friend_timeline (
+    user_id bigint REFERENCES users(id) ON DELETE CASCADE,
+    event_id bigint,
+    author_id bigint NOT NULL,
+    PRIMARY KEY (user_id, event_id)
+);
@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.service.ExportService;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ExportController.class)
+class ExportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @MockBean
+    private ExportService exportService;
+
+    @Test
+    void exportLikesOk() throws Exception {
+        mockLikes();
+
+        var result = mockMvc.perform(MockMvcRequestBuilders.get("/export/likes.ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, ExportController.NDJSON_VALUE))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().string("{\"filmId\":1,\"userId\":2}\n{\"filmId\":1,\"userId\":3}\n"));
+    }
+
+    @Test
+    void exportLikesGzipOk() throws Exception {
+        mockLikes();
+
+        var result = mockMvc.perform(MockMvcRequestBuilders.get("/export/likes.ndjson")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult response = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+        var bytes = response.getResponse().getContentAsByteArray();
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8))
+                    .isEqualTo("{\"filmId\":1,\"userId\":2}\n{\"filmId\":1,\"userId\":3}\n");
+        }
+    }
+
+    private void mockLikes() {
+        doAnswer(invocation -> {
+            Consumer<FilmLike> consumer = invocation.getArgument(0);
+            consumer.accept(new FilmLike(1, 2));
+            consumer.accept(new FilmLike(1, 3));
+            return null;
+        }).when(exportService).exportLikes(any());
+    }
+}
@@ -12,14 +12,21 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(FilmController.class)
@@ -345,4 +352,64 @@ class FilmControllerTest {
         mockMvc.perform(mockRequest)
                 .andExpect(status().isBadRequest());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getPageOk() throws Exception {
+        when(filmService.getFilms(5, 2)).thenReturn(List.of(new Film(), new Film()));
+        mockMvc.perform(MockMvcRequestBuilders.get("/films?afterId=5&limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(2)));
+
+        when(filmService.getFilms(0, 3)).thenReturn(List.of());
+        mockMvc.perform(MockMvcRequestBuilders.get("/films?limit=3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(0)));
+    }
+
+    @Test
+    void getPageFailLimit() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/films?limit=0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.get("/films?afterId=-1&limit=10"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void streamOk() throws Exception {
+        var first = new Film();
+        first.setId(1);
+        var second = new Film();
+        second.setId(2);
+        doAnswer(invocation -> {
+            Consumer<Film> consumer = invocation.getArgument(0);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).when(filmService).streamFilms(any());
+
+        var result = mockMvc.perform(MockMvcRequestBuilders.get("/films/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$[1].id", is(2)));
+    }
+
+    @Test
+    void postLikesBatchOk() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/films/likes:batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"filmId\": 1, \"userId\": 2}, {\"filmId\": 3, \"userId\": 2}]"))
+                .andExpect(status().isOk());
+        verify(filmService).putLikes(List.of(new FilmLike(1, 2), new FilmLike(3, 2)));
+    }
+
+    @Test
+    void postLikesBatchEmpty() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/films/likes:batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+}
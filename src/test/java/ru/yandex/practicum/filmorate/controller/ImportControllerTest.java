@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.yandex.practicum.filmorate.model.ImportError;
+import ru.yandex.practicum.filmorate.model.ImportFormat;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+import ru.yandex.practicum.filmorate.service.ImportService;
+
+import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ImportController.class)
+class ImportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @MockBean
+    private ImportService importService;
+
+    @Test
+    void importLikesCsvOk() throws Exception {
+        var result = new ImportResult();
+        result.setTotal(2);
+        result.setImported(1);
+        result.setFailed(1);
+        result.getErrors().add(new ImportError(3, "film with id 99 not found"));
+        when(importService.importLikes(any(), eq(ImportFormat.CSV))).thenReturn(result);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/import/likes")
+                        .contentType(ImportFormat.CSV_VALUE)
+                        .content("filmId,userId\n1,1\n99,1\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(1)))
+                .andExpect(jsonPath("$.errors[0].line", is(3)));
+    }
+
+    @Test
+    void importFilmsNdjsonOk() throws Exception {
+        when(importService.importFilms(any(), eq(ImportFormat.NDJSON))).thenReturn(new ImportResult());
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/import/films")
+                        .contentType(ImportFormat.NDJSON_VALUE)
+                        .content("{\"name\":\"film\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.failed", is(0)));
+    }
+}
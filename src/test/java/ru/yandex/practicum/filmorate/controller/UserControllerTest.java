@@ -11,12 +11,14 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.FeedService;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.hamcrest.core.Is.is;
 import static org.mockito.Mockito.when;
@@ -283,4 +285,32 @@ class UserControllerTest {
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.message", is("Validation exception")));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getByIdsOk() throws Exception {
+        var first = new User(3, "user3@mail.com", "user_login3", "user_name", LocalDate.of(2002, 7, 5), null);
+        var second = new User(1, "user1@mail.com", "user_login1", "user_name", LocalDate.of(2002, 7, 5), null);
+        when(userService.getUsers(List.of(3L, 1L))).thenReturn(List.of(first, second));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users?ids=3,1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(3)))
+                .andExpect(jsonPath("$[1].id", is(1)));
+    }
+
+    @Test
+    void getLatestFeedOk() throws Exception {
+        var feed = Feed.builder().eventId(7L).userId(1L).build();
+        when(feedService.getLatestUserFeed(1L, 20)).thenReturn(List.of(feed));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/1/feed?latest=true&limit=20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].eventId", is(7)));
+    }
+
+    @Test
+    void getLatestFeedWithAfterEventIdFail() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/1/feed?latest=true&afterEventId=3"))
+                .andExpect(status().isBadRequest());
+    }
+}
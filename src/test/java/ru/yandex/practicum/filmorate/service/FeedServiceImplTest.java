@@ -5,6 +5,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.service.impl.FeedServiceImpl;
+import ru.yandex.practicum.filmorate.service.impl.FeedStreamHub;
 import ru.yandex.practicum.filmorate.storage.impl.dao.DbFeedStorage;
 import ru.yandex.practicum.filmorate.storage.impl.dao.DbUserStorage;
 
@@ -17,12 +18,14 @@ public class FeedServiceImplTest {
     @MockBean
     private DbUserStorage userStorage;
     @MockBean
+    private FeedStreamHub feedStreamHub;
+    @MockBean
     private FeedService feedService;
 
     @Test
     public void userNotFound() {
         Long id = -1L;
-        feedService = new FeedServiceImpl(feedStorage, userStorage);
+        feedService = new FeedServiceImpl(feedStorage, userStorage, feedStreamHub);
         assertThrows(NotFoundException.class, () -> feedService.getUserFeed(id));
     }
 }
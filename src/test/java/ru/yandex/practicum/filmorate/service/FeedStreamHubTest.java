@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.service.impl.FeedStreamHub;
+import ru.yandex.practicum.filmorate.storage.index.FeedStoredEvent;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+public class FeedStreamHubTest {
+    private static final Pattern EVENT_ID = Pattern.compile("^id:(\\d+)$", Pattern.MULTILINE);
+
+    private final FeedStreamHub hub = new FeedStreamHub(Duration.ofMinutes(1), 2, 1);
+    private final List<Feed> stored = LongStream.rangeClosed(1, 3)
+            .mapToObj(FeedStreamHubTest::feed)
+            .collect(Collectors.toCollection(CopyOnWriteArrayList::new));
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new StreamController()).build();
+
+    @AfterEach
+    public void stop() {
+        hub.stop();
+    }
+
+    @Test
+    public void resumesAfterLastEventIdAndPushesNewEvents() throws Exception {
+        var result = mockMvc.perform(get("/stream").header("Last-Event-ID", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        stored.add(feed(4));
+        hub.onStored(new FeedStoredEvent(List.of(feed(4))));
+        assertThat(awaitEventIds(result, 3)).containsExactly(2L, 3L, 4L);
+    }
+
+    @Test
+    public void subscriberThatFallsBehindCatchesUpFromStoredEvents() throws Exception {
+        var result = mockMvc.perform(get("/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        hub.onStored(new FeedStoredEvent(stored));
+        assertThat(awaitEventIds(result, 3)).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    public void newSubscriberCatchesUpWithoutReplayingHistory() throws Exception {
+        var result = mockMvc.perform(get("/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        var added = LongStream.rangeClosed(4, 6)
+                .mapToObj(FeedStreamHubTest::feed)
+                .collect(Collectors.toList());
+        stored.addAll(added);
+        hub.onStored(new FeedStoredEvent(added));
+        assertThat(awaitEventIds(result, 3)).containsExactly(4L, 5L, 6L);
+    }
+
+    private static List<Long> awaitEventIds(MvcResult result, int count) throws Exception {
+        List<Long> ids = List.of();
+        for (var attempt = 0; attempt < 100 && ids.size() < count; attempt++) {
+            Thread.sleep(20);
+            ids = EVENT_ID.matcher(result.getResponse().getContentAsString()).results()
+                    .map(match -> Long.parseLong(match.group(1)))
+                    .collect(Collectors.toList());
+        }
+        return ids;
+    }
+
+    private static Feed feed(long eventId) {
+        return Feed.builder()
+                .timestamp(eventId)
+                .userId(1L)
+                .eventType(EventType.FRIEND)
+                .operation(Operation.ADD)
+                .eventId(eventId)
+                .entityId(eventId)
+                .build();
+    }
+
+    @RestController
+    private class StreamController {
+        @GetMapping("/stream")
+        public SseEmitter stream(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+            return hub.subscribe(1L, lastEventId, (afterEventId, limit) -> stored.stream()
+                    .filter(feed -> feed.getEventId() > afterEventId)
+                    .limit(limit)
+                    .collect(Collectors.toList()));
+        }
+    }
+}
@@ -8,6 +8,10 @@ import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.storage.index.FilmCache;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+
+import java.time.Duration;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -23,7 +27,8 @@ class DbDirectorStorageTest {
 
     @BeforeEach
     public void init() {
-        dbDirectorStorage = new DbDirectorStorage(jdbcOperations);
+        dbDirectorStorage = new DbDirectorStorage(jdbcOperations, new FilmSearchIndex(jdbcOperations),
+                new FilmCache(100, Duration.ofMinutes(10)));
         director = new Director(1, "dir name");
         secondDirector = new Director(2, "second name");
     }
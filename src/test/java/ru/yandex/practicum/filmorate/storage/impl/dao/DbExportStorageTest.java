@@ -0,0 +1,120 @@
+package ru.yandex.practicum.filmorate.storage.impl.dao;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmCache;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.RecentFeedCache;
+import ru.yandex.practicum.filmorate.storage.index.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.index.LikeBuffer;
+import ru.yandex.practicum.filmorate.storage.index.SocialIndex;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@ContextConfiguration(classes = FilmorateApplication.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class DbExportStorageTest {
+    private final NamedParameterJdbcOperations jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final DataSource dataSource;
+    private DbExportStorage exportStorage;
+    private DbFilmStorage filmStorage;
+    private DbUserStorage userStorage;
+    private DbDirectorStorage directorStorage;
+
+    @BeforeEach
+    void init() {
+        var popularityIndex = new FilmPopularityIndex(jdbcTemplate);
+        var referenceData = new ReferenceDataCache(jdbcTemplate);
+        exportStorage = new DbExportStorage(dataSource, transactionManager, referenceData, 2);
+        var searchIndex = new FilmSearchIndex(jdbcTemplate);
+        var socialIndex = new SocialIndex(jdbcTemplate, 10);
+        var filmCache = new FilmCache(100, Duration.ofMinutes(10));
+        var likeBuffer = new LikeBuffer(jdbcTemplate, transactionManager, popularityIndex, socialIndex,
+                false, LikeBuffer.Durability.GROUP, 1000);
+        filmStorage = new DbFilmStorage(jdbcTemplate, popularityIndex, searchIndex, socialIndex,
+                referenceData, filmCache, likeBuffer);
+        userStorage = new DbUserStorage(jdbcTemplate, popularityIndex, socialIndex, likeBuffer,
+                new RecentFeedCache(50, 100));
+        directorStorage = new DbDirectorStorage(jdbcTemplate, searchIndex, filmCache);
+    }
+
+    @Test
+    void exportFilmsMergesGenresAndDirectors() {
+        var director = directorStorage.create(new Director(0, "Director"));
+        var first = createFilm("first");
+        first.addGenre(new Genre(2, null));
+        first.addGenre(new Genre(1, null));
+        first.addDirector(director);
+        filmStorage.update(first);
+        createFilm("second");
+        var third = createFilm("third");
+        third.addGenre(new Genre(3, null));
+        filmStorage.update(third);
+
+        List<Film> films = new ArrayList<>();
+        exportStorage.exportFilms(films::add);
+
+        assertThat(films).hasSize(3);
+        assertThat(films.get(0).getGenres()).extracting(Genre::getId).containsExactly(2, 1);
+        assertThat(films.get(0).getDirectors()).extracting(Director::getName).containsExactly("Director");
+        assertThat(films.get(1).getGenres()).isEmpty();
+        assertThat(films.get(1).getDirectors()).isEmpty();
+        assertThat(films.get(2).getGenres()).extracting(Genre::getId).containsExactly(3);
+        assertThat(films.get(2).getMpa().getName()).isNotNull();
+    }
+
+    @Test
+    void exportUsersLikesAndFeed() {
+        var film = createFilm("film");
+        for (int i = 0; i < 5; i++) {
+            var user = userStorage.create(new User(0, "mail" + i + "@mail.ru", "login" + i, "name",
+                    LocalDate.of(1990, 1, 1), new HashSet<>()));
+            filmStorage.putLike(film.getId(), user.getId());
+        }
+        jdbcTemplate.getJdbcOperations().update("INSERT INTO feed (timestamp, user_id, event_type, operation, " +
+                "entity_id) VALUES (1, 1, 1, 1, 1)");
+
+        List<User> users = new ArrayList<>();
+        exportStorage.exportUsers(users::add);
+        List<FilmLike> likes = new ArrayList<>();
+        exportStorage.exportLikes(likes::add);
+        List<Feed> feed = new ArrayList<>();
+        exportStorage.exportFeed(feed::add);
+
+        assertThat(users).extracting(User::getLogin).containsExactly("login0", "login1", "login2", "login3", "login4");
+        assertThat(likes).hasSize(5).allMatch(like -> like.getFilmId() == film.getId());
+        assertThat(feed).hasSize(1);
+    }
+
+    private Film createFilm(String name) {
+        return filmStorage.create(new Film(0, name, "description", LocalDate.of(2000, 1, 1), 100,
+                new Mpa(1, null), new LinkedHashSet<>(), new LinkedHashSet<>()));
+    }
+}
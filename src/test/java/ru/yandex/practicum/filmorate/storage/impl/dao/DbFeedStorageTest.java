@@ -7,18 +7,34 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.FilmorateApplication;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.EventType;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.Operation;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.index.FeedRecorder;
+import ru.yandex.practicum.filmorate.storage.index.FeedStoredEvent;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FriendTimeline;
+import ru.yandex.practicum.filmorate.storage.index.RecentFeedCache;
+import ru.yandex.practicum.filmorate.storage.index.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.index.LikeBuffer;
+import ru.yandex.practicum.filmorate.storage.index.SocialIndex;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -26,17 +42,31 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 @JdbcTest
 @ContextConfiguration(classes = FilmorateApplication.class)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
 public class DbFeedStorageTest {
     private final NamedParameterJdbcOperations jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
     private DbFeedStorage dbFeedStorage;
     private DbUserStorage dbUserStorage;
+    private RecentFeedCache recentFeed;
+    private FriendTimeline friendTimeline;
 
     private User user;
 
     @BeforeEach
     public void init() {
-        dbFeedStorage = new DbFeedStorage(jdbcTemplate);
-        dbUserStorage = new DbUserStorage(jdbcTemplate);
+        recentFeed = new RecentFeedCache(3, 100);
+        var popularityIndex = new FilmPopularityIndex(jdbcTemplate);
+        var socialIndex = new SocialIndex(jdbcTemplate, 10);
+        friendTimeline = new FriendTimeline(jdbcTemplate, transactionManager, socialIndex, 3, 1);
+        dbFeedStorage = new DbFeedStorage(jdbcTemplate, new ReferenceDataCache(jdbcTemplate),
+                new FeedRecorder(jdbcTemplate, transactionManager, recentFeed,
+                        event -> friendTimeline.onStored((FeedStoredEvent) event), false, 10, 10),
+                recentFeed, friendTimeline);
+        dbUserStorage = new DbUserStorage(jdbcTemplate, popularityIndex, socialIndex,
+                new LikeBuffer(jdbcTemplate, transactionManager, popularityIndex, socialIndex,
+                false, LikeBuffer.Durability.GROUP, 1000), recentFeed);
         user = new User(1L, "mail@mail.ru", "userName", "userLogin",
                 LocalDate.of(1990, 1, 1), new HashSet<Long>());
     }
@@ -70,6 +100,27 @@ public class DbFeedStorageTest {
                 .isInstanceOf(DataIntegrityViolationException.class);
     }
 
+    @Test
+    public void recordEventsKeepsOrder() {
+        dbUserStorage.create(user);
+        List<Feed> feeds = new ArrayList<>();
+        for (long entityId = 1; entityId <= 25; entityId++) {
+            feeds.add(Feed.builder()
+                    .userId(user.getId())
+                    .eventType(EventType.FRIEND)
+                    .operation(Operation.ADD)
+                    .entityId(entityId)
+                    .build());
+        }
+        dbFeedStorage.recordEvents(feeds);
+        assertThat(dbFeedStorage.getFeed(user.getId()))
+                .extracting(Feed::getEntityId)
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, 25).boxed().collect(Collectors.toList()));
+        assertThat(feeds)
+                .extracting(Feed::getEventId)
+                .doesNotContain(0L);
+    }
+
     @Test
     public void getFeedSuccess() {
         dbUserStorage.create(user);
@@ -90,6 +141,191 @@ public class DbFeedStorageTest {
                 .isInstanceOf(Feed.class);
     }
 
+    @Test
+    public void rolledBackEventIsNotCachedOrPublished() {
+        dbUserStorage.create(user);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            recordFriendEvent(1L);
+            status.setRollbackOnly();
+        });
+        recordFriendEvent(2L);
+        assertThat(dbFeedStorage.getFeed(user.getId()))
+                .extracting(Feed::getEntityId)
+                .containsExactly(2L);
+    }
+
+    @Test
+    public void eventsArePublishedInEventIdOrder() {
+        dbUserStorage.create(user);
+        List<Long> published = new ArrayList<>();
+        var recorder = new FeedRecorder(jdbcTemplate, transactionManager, recentFeed,
+                event -> ((FeedStoredEvent) event).getEvents().forEach(feed -> published.add(feed.getEntityId())),
+                false, 10, 10);
+        var storage = new DbFeedStorage(jdbcTemplate, new ReferenceDataCache(jdbcTemplate), recorder,
+                recentFeed, friendTimeline);
+        var outer = new TransactionTemplate(transactionManager);
+        var inner = new TransactionTemplate(transactionManager);
+        inner.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+        outer.executeWithoutResult(status -> {
+            storage.recordEvent(friendEvent(1L));
+            inner.executeWithoutResult(innerStatus -> storage.recordEvent(friendEvent(2L)));
+            assertThat(published).isEmpty();
+        });
+        assertThat(published).containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void eventCommittedAfterLaterOneIsCached() {
+        dbUserStorage.create(user);
+        var outer = new TransactionTemplate(transactionManager);
+        var inner = new TransactionTemplate(transactionManager);
+        inner.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+        outer.executeWithoutResult(status -> {
+            recordFriendEvent(1L);
+            inner.executeWithoutResult(innerStatus -> recordFriendEvent(2L));
+            inner.executeWithoutResult(innerStatus -> assertThat(dbFeedStorage.getFeed(user.getId()))
+                    .extracting(Feed::getEntityId)
+                    .containsExactly(2L));
+        });
+        assertThat(dbFeedStorage.getFeed(user.getId()))
+                .extracting(Feed::getEntityId)
+                .containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void getLatestFeedOfLongFeedIsServedFromRing() {
+        dbUserStorage.create(user);
+        for (long entityId = 1; entityId <= 5; entityId++) {
+            recordFriendEvent(entityId);
+        }
+        assertThat(dbFeedStorage.getLatestFeed(user.getId(), 2))
+                .extracting(Feed::getEntityId)
+                .containsExactly(4L, 5L);
+        jdbcTemplate.getJdbcOperations().update("DELETE FROM feed");
+        assertThat(dbFeedStorage.getLatestFeed(user.getId(), 3))
+                .extracting(Feed::getEntityId)
+                .containsExactly(3L, 4L, 5L);
+        assertThat(dbFeedStorage.getLatestFeed(user.getId(), 4))
+                .isEmpty();
+    }
+
+    @Test
+    public void queuedEventsAreWrittenInOrderBeforeRead() {
+        dbUserStorage.create(user);
+        var asyncFeedStorage = new DbFeedStorage(jdbcTemplate, new ReferenceDataCache(jdbcTemplate),
+                new FeedRecorder(jdbcTemplate, transactionManager, recentFeed, event -> { }, true, 3, 2),
+                recentFeed, friendTimeline);
+        for (long entityId = 1; entityId <= 5; entityId++) {
+            asyncFeedStorage.recordEvent(Feed.builder()
+                    .userId(user.getId())
+                    .eventType(EventType.FRIEND)
+                    .operation(Operation.ADD)
+                    .entityId(entityId)
+                    .build());
+        }
+        assertThat(asyncFeedStorage.getFeed(user.getId()))
+                .extracting(Feed::getEntityId)
+                .containsExactly(1L, 2L, 3L, 4L, 5L);
+    }
+
+    @Test
+    public void getFeedPagesFollowNewEvents() {
+        dbUserStorage.create(user);
+        for (long entityId = 1; entityId <= 2; entityId++) {
+            recordFriendEvent(entityId);
+        }
+        var firstPage = dbFeedStorage.getFeed(user.getId(), 0, 10);
+        assertThat(firstPage).extracting(Feed::getEntityId).containsExactly(1L, 2L);
+        for (long entityId = 3; entityId <= 5; entityId++) {
+            recordFriendEvent(entityId);
+        }
+        var lastEventId = firstPage.get(1).getEventId();
+        assertThat(dbFeedStorage.getFeed(user.getId(), lastEventId, 2))
+                .extracting(Feed::getEntityId)
+                .containsExactly(3L, 4L);
+        assertThat(dbFeedStorage.getFeed(user.getId(), 0, 10))
+                .extracting(Feed::getEntityId)
+                .containsExactly(1L, 2L, 3L, 4L, 5L);
+        assertThat(dbFeedStorage.getFeed(user.getId(), firstPage.get(0).getEventId(), 2))
+                .extracting(Feed::getEntityId)
+                .containsExactly(2L, 3L);
+    }
+
+    @Test
+    public void getFriendFeedFansOutAndReadsCelebritiesOnRead() {
+        var author = dbUserStorage.create(new User(0, "author@mail.ru", "author", "author",
+                LocalDate.of(1990, 1, 1), new HashSet<>()));
+        var celebrity = dbUserStorage.create(new User(0, "celebrity@mail.ru", "celebrity", "celebrity",
+                LocalDate.of(1990, 1, 1), new HashSet<>()));
+        var fan = dbUserStorage.create(new User(0, "fan@mail.ru", "fan", "fan",
+                LocalDate.of(1990, 1, 1), new HashSet<>()));
+        dbUserStorage.create(user);
+        dbUserStorage.addFriends(user.getId(), author.getId());
+        dbFeedStorage.addFriendToTimeline(user.getId(), author.getId());
+        recordFriendEvent(author, 1L);
+        assertThat(dbFeedStorage.getFriendFeed(user.getId(), 10))
+                .extracting(Feed::getEntityId)
+                .containsExactly(1L);
+
+        recordFriendEvent(author, 2L);
+        dbUserStorage.addFriends(fan.getId(), celebrity.getId());
+        dbUserStorage.addFriends(user.getId(), celebrity.getId());
+        dbFeedStorage.addFriendToTimeline(user.getId(), celebrity.getId());
+        recordFriendEvent(celebrity, 3L);
+        assertThat(dbFeedStorage.getFriendFeed(user.getId(), 10))
+                .extracting(Feed::getEntityId)
+                .containsExactly(1L, 2L, 3L);
+        assertThat(dbFeedStorage.getFriendFeed(user.getId(), 2))
+                .extracting(Feed::getEntityId)
+                .containsExactly(2L, 3L);
+
+        dbUserStorage.deleteFriends(user.getId(), author.getId());
+        dbFeedStorage.removeFriendFromTimeline(user.getId(), author.getId());
+        assertThat(dbFeedStorage.getFriendFeed(user.getId(), 10))
+                .extracting(Feed::getEntityId)
+                .containsExactly(3L);
+    }
+
+    @Test
+    public void deletedFriendEventsArePrunedFromTimeline() {
+        var author = dbUserStorage.create(new User(0, "author@mail.ru", "author", "author",
+                LocalDate.of(1990, 1, 1), new HashSet<>()));
+        var other = dbUserStorage.create(new User(0, "other@mail.ru", "other", "other",
+                LocalDate.of(1990, 1, 1), new HashSet<>()));
+        dbUserStorage.create(user);
+        dbUserStorage.addFriends(user.getId(), other.getId());
+        dbUserStorage.addFriends(user.getId(), author.getId());
+        recordFriendEvent(other, 1L);
+        recordFriendEvent(author, 2L);
+        recordFriendEvent(author, 3L);
+        assertThat(dbFeedStorage.getFriendFeed(user.getId(), 10))
+                .extracting(Feed::getEntityId)
+                .containsExactly(1L, 2L, 3L);
+
+        dbUserStorage.delete(author.getId());
+        dbFeedStorage.deleteTimeline(author.getId());
+        recordFriendEvent(other, 4L);
+        assertThat(dbFeedStorage.getFriendFeed(user.getId(), 10))
+                .extracting(Feed::getEntityId)
+                .containsExactly(1L, 4L);
+    }
+
+    @Test
+    public void friendTimelinesArePersisted() {
+        var author = dbUserStorage.create(new User(0, "author@mail.ru", "author", "author",
+                LocalDate.of(1990, 1, 1), new HashSet<>()));
+        dbUserStorage.create(user);
+        dbUserStorage.addFriends(user.getId(), author.getId());
+        recordFriendEvent(author, 1L);
+        dbFeedStorage.getFriendFeed(user.getId(), 10);
+        recordFriendEvent(author, 2L);
+        friendTimeline.persist();
+        var loaded = new FriendTimeline(jdbcTemplate, transactionManager, new SocialIndex(jdbcTemplate, 10), 3, 1);
+        loaded.load();
+        assertThat(loaded.find(user.getId(), 10, (id, count) -> List.of()))
+                .hasSize(2);
+    }
+
     @Test
     public void getFeedEmpty() {
         dbUserStorage.create(user);
@@ -129,4 +365,26 @@ public class DbFeedStorageTest {
         assertThatThrownBy(() -> dbFeedStorage.getOperationId(wrongOperationName))
                 .isInstanceOf(NotFoundException.class);
     }
+
+    private void recordFriendEvent(long entityId) {
+        recordFriendEvent(user, entityId);
+    }
+
+    private void recordFriendEvent(User author, long entityId) {
+        dbFeedStorage.recordEvent(Feed.builder()
+                .userId(author.getId())
+                .eventType(EventType.FRIEND)
+                .operation(Operation.ADD)
+                .entityId(entityId)
+                .build());
+    }
+
+    private Feed friendEvent(long entityId) {
+        return Feed.builder()
+                .userId(user.getId())
+                .eventType(EventType.FRIEND)
+                .operation(Operation.ADD)
+                .entityId(entityId)
+                .build();
+    }
 }
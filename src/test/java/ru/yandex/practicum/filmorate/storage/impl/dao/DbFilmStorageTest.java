@@ -8,11 +8,25 @@ import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
-
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmCache;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.RecentFeedCache;
+import ru.yandex.practicum.filmorate.storage.index.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.index.LikeBuffer;
+import ru.yandex.practicum.filmorate.storage.index.SocialIndex;
+
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -27,9 +41,11 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 @JdbcTest
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
 class DbFilmStorageTest {
 
     private final NamedParameterJdbcOperations jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
     private User user;
     private Film film;
     private Film filmWithoutGenre;
@@ -38,6 +54,8 @@ class DbFilmStorageTest {
     private Film filmWithAll;
     private DbFilmStorage dbFilmStorage;
     private DbUserStorage dbUserStorage;
+    private FilmSearchIndex searchIndex;
+    private FilmCache filmCache;
 
     private static final Map<Integer, Genre> genres = Map.of(
             1, new Genre(1, "Комедия"),
@@ -58,8 +76,17 @@ class DbFilmStorageTest {
 
     @BeforeEach
     public void init() {
-        dbFilmStorage = new DbFilmStorage(jdbcTemplate);
-        dbUserStorage = new DbUserStorage(jdbcTemplate);
+        var popularityIndex = new FilmPopularityIndex(jdbcTemplate);
+        popularityIndex.rebuild();
+        searchIndex = new FilmSearchIndex(jdbcTemplate);
+        var socialIndex = new SocialIndex(jdbcTemplate, 10);
+        filmCache = new FilmCache(100, Duration.ofMinutes(10));
+        var likeBuffer = new LikeBuffer(jdbcTemplate, transactionManager, popularityIndex, socialIndex,
+                false, LikeBuffer.Durability.GROUP, 1000);
+        dbFilmStorage = new DbFilmStorage(jdbcTemplate, popularityIndex, searchIndex, socialIndex,
+                new ReferenceDataCache(jdbcTemplate), filmCache, likeBuffer);
+        dbUserStorage = new DbUserStorage(jdbcTemplate, popularityIndex, socialIndex, likeBuffer,
+                new RecentFeedCache(50, 100));
 
         film = new Film(1, "film_name", "film_description",
                 LocalDate.of(2000, 5, 3),
@@ -140,6 +167,19 @@ class DbFilmStorageTest {
                 .isInstanceOf(DataIntegrityViolationException.class);
     }
 
+    @Test
+    public void findFilmResolvesReferenceData() {
+        filmWithoutAll.setMpa(new Mpa(1, null));
+        filmWithoutAll.addGenre(new Genre(1, null));
+        var id = dbFilmStorage.create(filmWithoutAll).getId();
+        var found = dbFilmStorage.findById(id).get();
+        assertThat(found.getMpa()).isEqualTo(ratings.get(1));
+        assertThat(found.getGenres()).containsExactly(genres.get(1));
+        var listed = dbFilmStorage.findAll().get(0);
+        assertThat(listed.getMpa()).isSameAs(found.getMpa());
+        assertThat(listed.getGenres().iterator().next()).isSameAs(found.getGenres().iterator().next());
+    }
+
     @Test
     public void updateFilmSuccess() {
         var id = dbFilmStorage.create(film).getId();
@@ -184,6 +224,36 @@ class DbFilmStorageTest {
                 .hasSize(2);
     }
 
+    @Test
+    public void findPage() {
+        var filmsId = initDb();
+
+        assertThat(dbFilmStorage.findPage(0, 2))
+                .extracting(Film::getId)
+                .containsExactly(filmsId.get(0), filmsId.get(1));
+        assertThat(dbFilmStorage.findPage(filmsId.get(1), 2))
+                .extracting(Film::getId)
+                .containsExactly(filmsId.get(2), filmsId.get(3));
+        assertThat(dbFilmStorage.findPage(filmsId.get(4), 2))
+                .isEmpty();
+        assertThat(dbFilmStorage.findPage(0, 1).get(0).getGenres())
+                .hasSize(film.getGenres().size());
+    }
+
+    @Test
+    public void streamAll() {
+        var filmsId = initDb();
+
+        List<Film> streamed = new ArrayList<>();
+        dbFilmStorage.streamAll(streamed::add);
+        assertThat(streamed)
+                .usingRecursiveComparison()
+                .isEqualTo(dbFilmStorage.findAll());
+        assertThat(streamed)
+                .extracting(Film::getId)
+                .containsExactlyElementsOf(filmsId);
+    }
+
     @Test
     public void findByIdFilmSuccess() {
         var id = dbFilmStorage.create(film).getId();
@@ -243,6 +313,24 @@ class DbFilmStorageTest {
                 .isEqualTo(filmsId.get(1));
     }
 
+    @Test
+    public void getPopularIgnoresRolledBackLike() {
+        var filmsId = initDb();
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            for (var i = 0; i < 5; i++) {
+                dbFilmStorage.putLike(filmsId.get(1), dbUserStorage.create(user).getId());
+            }
+            status.setRollbackOnly();
+        });
+
+        var films = dbFilmStorage.getPopular(10, null, null);
+        assertThat(films.get(0).getId())
+                .isEqualTo(filmsId.get(4));
+        assertThat(films.get(4).getId())
+                .isEqualTo(filmsId.get(1));
+    }
+
     @Test
     public void getPopularWithYear() {
         var filmsId = initDb();
@@ -319,6 +407,277 @@ class DbFilmStorageTest {
                 .isEqualTo(filmsId.get(0));
     }
 
+    @Test
+    public void getPopularRepeatedLikeCountsOnce() {
+        var filmsId = initDb();
+
+        dbFilmStorage.putLike(filmsId.get(3), 1L);
+        dbFilmStorage.putLike(filmsId.get(3), 1L);
+        var films = dbFilmStorage.getPopular(10, null, null);
+        assertThat(films.get(3).getId())
+                .isEqualTo(filmsId.get(3));
+    }
+
+    @Test
+    public void putLikesStoresNewLikesOnce() {
+        var filmsId = initDb();
+        var usersId = dbUserStorage.findAll().stream().map(User::getId).toArray(Long[]::new);
+
+        dbFilmStorage.putLikes(List.of(
+                new FilmLike(filmsId.get(1), usersId[0]),
+                new FilmLike(filmsId.get(1), usersId[1]),
+                new FilmLike(filmsId.get(1), usersId[0]),
+                new FilmLike(filmsId.get(0), usersId[0])));
+        assertThat(jdbcTemplate.queryForList("SELECT like_count FROM film WHERE id IN (:ids) ORDER BY id",
+                Map.of("ids", filmsId.subList(0, 2)), Long.class))
+                .containsExactly(2L, 2L);
+        assertThat(dbFilmStorage.findExistingIds(List.of(filmsId.get(1), 100L)))
+                .containsExactly(filmsId.get(1));
+    }
+
+    @Test
+    public void getPopularAfterDeleteLike() {
+        var filmsId = initDb();
+
+        dbFilmStorage.deleteLike(filmsId.get(4), 1L);
+        dbFilmStorage.deleteLike(filmsId.get(4), 2L);
+        var films = dbFilmStorage.getPopular(3, null, null);
+        assertThat(films)
+                .hasSize(3);
+        assertThat(films.get(0).getId())
+                .isEqualTo(filmsId.get(2));
+        assertThat(films.get(1).getId())
+                .isEqualTo(filmsId.get(0));
+        assertThat(films.get(2).getId())
+                .isEqualTo(filmsId.get(4));
+    }
+
+    @Test
+    public void getPopularAfterDeleteUser() {
+        var filmsId = initDb();
+
+        dbUserStorage.delete(1L);
+        dbUserStorage.delete(2L);
+        var films = dbFilmStorage.getPopular(10, 2, film.getReleaseDate().getYear());
+        assertThat(films)
+                .hasSize(2);
+        assertThat(films.get(0).getId())
+                .isEqualTo(filmsId.get(4));
+        assertThat(films.get(1).getId())
+                .isEqualTo(filmsId.get(0));
+        assertThat(dbFilmStorage.getPopular(1, null, null).get(0).getId())
+                .isEqualTo(filmsId.get(4));
+    }
+
+    @Test
+    public void getPopularAfterUpdateAndDelete() {
+        var filmsId = initDb();
+
+        filmWithoutAll.setId(filmsId.get(3));
+        filmWithoutAll.addGenre(genres.get(6));
+        dbFilmStorage.update(filmWithoutAll);
+        assertThat(dbFilmStorage.getPopular(10, 6, null))
+                .hasSize(1);
+        dbFilmStorage.delete(filmsId.get(3));
+        assertThat(dbFilmStorage.getPopular(10, 6, null))
+                .isEmpty();
+        assertThat(dbFilmStorage.getPopular(10, null, null))
+                .hasSize(filmsId.size() - 1);
+    }
+
+    @Test
+    public void searchAndDirectorFilmsAreHydrated() {
+        var director = new DbDirectorStorage(jdbcTemplate, searchIndex, filmCache)
+                .create(new Director(0, "Director Name"));
+        film.addDirector(director);
+        var id = dbFilmStorage.create(film).getId();
+        film.setId(id);
+        dbFilmStorage.create(filmWithoutGenre);
+
+        assertThat(dbFilmStorage.findByTitleOrDirectorName("nothing", "rector"))
+                .hasSize(1)
+                .first()
+                .usingRecursiveComparison()
+                .isEqualTo(film);
+        assertThat(dbFilmStorage.findByTitle("film_"))
+                .hasSize(1)
+                .first()
+                .usingRecursiveComparison()
+                .isEqualTo(film);
+        assertThat(dbFilmStorage.getByDirectorId(director.getId(), "likes"))
+                .hasSize(1)
+                .first()
+                .usingRecursiveComparison()
+                .isEqualTo(film);
+    }
+
+    @Test
+    public void searchIsRankedByLikes() {
+        var filmsId = initDb();
+
+        assertThat(dbFilmStorage.findByTitle("WITHOUT"))
+                .extracting(Film::getId)
+                .containsExactly(filmsId.get(2), filmsId.get(3), filmsId.get(1));
+        assertThat(dbFilmStorage.findByTitle("me"))
+                .extracting(Film::getId)
+                .containsExactly(filmsId.get(4), filmsId.get(0));
+        assertThat(dbFilmStorage.findByTitle("name_")).isEmpty();
+    }
+
+    @Test
+    public void searchFollowsDirectorChanges() {
+        var filmsId = initDb();
+        var directorStorage = new DbDirectorStorage(jdbcTemplate, searchIndex, filmCache);
+        var director = directorStorage.create(new Director(0, "Kubrick"));
+        film.setId(filmsId.get(0));
+        film.addDirector(director);
+        dbFilmStorage.update(film);
+        filmWithoutAll.setId(filmsId.get(3));
+        filmWithoutAll.addDirector(director);
+        dbFilmStorage.update(filmWithoutAll);
+
+        assertThat(dbFilmStorage.findByDirectorName("BRIC"))
+                .extracting(Film::getId)
+                .containsExactly(filmsId.get(0), filmsId.get(3));
+        assertThat(dbFilmStorage.findByTitleOrDirectorName("all", "bric"))
+                .extracting(Film::getId)
+                .containsExactly(filmsId.get(4), filmsId.get(0), filmsId.get(3));
+
+        director.setName("Nolan");
+        directorStorage.update(director);
+        assertThat(dbFilmStorage.findByDirectorName("bric")).isEmpty();
+        assertThat(dbFilmStorage.findByDirectorName("nolan")).hasSize(2);
+
+        dbFilmStorage.delete(filmsId.get(0));
+        assertThat(dbFilmStorage.findByDirectorName("nolan")).hasSize(1);
+        directorStorage.delete(director.getId());
+        assertThat(dbFilmStorage.findByDirectorName("nolan")).isEmpty();
+    }
+
+    @Test
+    public void findByIdIsCachedUntilChanged() {
+        var id = dbFilmStorage.create(film).getId();
+        var directorStorage = new DbDirectorStorage(jdbcTemplate, searchIndex, filmCache);
+        var director = directorStorage.create(new Director(0, "Kubrick"));
+        film.addDirector(director);
+        dbFilmStorage.update(film);
+
+        dbFilmStorage.findById(id).get().setName("changed by caller");
+        assertThat(dbFilmStorage.findById(id).get().getName()).isEqualTo("film_name");
+        assertThat(filmCache.getStatistics().getHitCount()).isEqualTo(1);
+
+        film.setName("new_name");
+        dbFilmStorage.update(film);
+        assertThat(dbFilmStorage.findById(id).get().getName()).isEqualTo("new_name");
+
+        director.setName("Nolan");
+        directorStorage.update(director);
+        assertThat(dbFilmStorage.findById(id).get().getDirectors())
+                .extracting(Director::getName)
+                .containsExactly("Nolan");
+
+        directorStorage.delete(director.getId());
+        assertThat(dbFilmStorage.findById(id).get().getDirectors()).isEmpty();
+
+        dbFilmStorage.delete(id);
+        assertThat(dbFilmStorage.findById(id)).isEmpty();
+    }
+
+    @Test
+    public void recommendationsFollowLikes() {
+        var filmsId = initDb();
+
+        assertThat(dbFilmStorage.getRecommendations(4L))
+                .extracting(Film::getId)
+                .containsExactly(filmsId.get(2), filmsId.get(0), filmsId.get(3));
+
+        dbFilmStorage.putLike(filmsId.get(3), 4L);
+        assertThat(dbFilmStorage.getRecommendations(4L))
+                .extracting(Film::getId)
+                .containsExactly(filmsId.get(2), filmsId.get(0));
+
+        dbUserStorage.delete(1L);
+        dbFilmStorage.deleteLike(filmsId.get(2), 3L);
+        assertThat(dbFilmStorage.getRecommendations(4L))
+                .extracting(Film::getId)
+                .containsExactly(filmsId.get(0), filmsId.get(2));
+        assertThat(dbFilmStorage.getRecommendations(3L))
+                .extracting(Film::getId)
+                .containsExactly(filmsId.get(3), filmsId.get(0), filmsId.get(2));
+
+        dbFilmStorage.delete(filmsId.get(0));
+        assertThat(dbFilmStorage.getRecommendations(3L))
+                .extracting(Film::getId)
+                .containsExactly(filmsId.get(2), filmsId.get(3));
+        assertThat(dbFilmStorage.getRecommendations(99L)).isEmpty();
+    }
+
+    @Test
+    public void likeCountFollowsLikes() {
+        var filmsId = initDb();
+
+        dbFilmStorage.putLike(filmsId.get(3), 1L);
+        dbFilmStorage.deleteLike(filmsId.get(4), 4L);
+        dbFilmStorage.deleteLike(filmsId.get(4), 4L);
+        dbUserStorage.delete(3L);
+        assertThat(likeCounts(filmsId))
+                .containsExactly(2L, 0L, 2L, 1L, 2L);
+    }
+
+    @Test
+    public void repairLikeCounts() {
+        var filmsId = initDb();
+
+        jdbcTemplate.update("UPDATE film SET like_count = 100", Map.of());
+        assertThat(dbFilmStorage.repairLikeCounts())
+                .isEqualTo(filmsId.size());
+        assertThat(likeCounts(filmsId))
+                .containsExactly(2L, 0L, 3L, 1L, 4L);
+        assertThat(dbFilmStorage.repairLikeCounts())
+                .isZero();
+        assertThat(dbFilmStorage.getPopular(1, null, null).get(0).getId())
+                .isEqualTo(filmsId.get(4));
+    }
+
+    @Test
+    public void bufferedLikesAreReadBeforeFlush() {
+        var filmsId = initDb();
+        var popularityIndex = new FilmPopularityIndex(jdbcTemplate);
+        popularityIndex.rebuild();
+        var socialIndex = new SocialIndex(jdbcTemplate, 10);
+        socialIndex.rebuild();
+        var likeBuffer = new LikeBuffer(jdbcTemplate, transactionManager, popularityIndex, socialIndex,
+                true, LikeBuffer.Durability.GROUP, 1000);
+        var bufferedStorage = new DbFilmStorage(jdbcTemplate, popularityIndex, searchIndex, socialIndex,
+                new ReferenceDataCache(jdbcTemplate), filmCache, likeBuffer);
+
+        bufferedStorage.putLike(filmsId.get(3), 2L);
+        bufferedStorage.putLike(filmsId.get(3), 3L);
+        bufferedStorage.deleteLike(filmsId.get(4), 4L);
+        bufferedStorage.putLike(filmsId.get(1), 1L);
+        bufferedStorage.deleteLike(filmsId.get(1), 1L);
+        bufferedStorage.putLike(filmsId.get(0), 1L);
+
+        assertThat(bufferedStorage.getPopular(5, null, null))
+                .extracting(Film::getId)
+                .containsExactly(filmsId.get(2), filmsId.get(3), filmsId.get(4), filmsId.get(0), filmsId.get(1));
+        assertThat(likeCounts(filmsId)).containsExactly(2L, 0L, 3L, 1L, 4L);
+
+        likeBuffer.flush();
+        assertThat(likeCounts(filmsId)).containsExactly(2L, 0L, 3L, 3L, 3L);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM film_likes WHERE film_id = :id",
+                Map.of("id", filmsId.get(1)), Long.class)).isZero();
+    }
+
+    private List<Long> likeCounts(List<Long> filmsId) {
+        List<Long> counts = new ArrayList<>();
+        for (var id : filmsId) {
+            counts.add(jdbcTemplate.queryForObject("SELECT like_count FROM film WHERE id = :id",
+                    Map.of("id", id), Long.class));
+        }
+        return counts;
+    }
+
     private List<Long> initDb() {
         List<Long> filmsId = new ArrayList<>();
         filmsId.add(dbFilmStorage.create(film).getId());
@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.index.ReferenceDataCache;
 
 import java.util.Map;
 
@@ -30,7 +31,7 @@ class DbGenreStorageTest {
 
     @BeforeEach
     public void init() {
-        dbGenreStorage = new DbGenreStorage(jdbcTemplate);
+        dbGenreStorage = new DbGenreStorage(new ReferenceDataCache(jdbcTemplate));
     }
 
     @Test
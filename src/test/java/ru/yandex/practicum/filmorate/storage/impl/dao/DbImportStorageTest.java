@@ -0,0 +1,165 @@
+package ru.yandex.practicum.filmorate.storage.impl.dao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.ImportError;
+import ru.yandex.practicum.filmorate.model.ImportFormat;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.service.impl.ImportServiceImpl;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmCache;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.RecentFeedCache;
+import ru.yandex.practicum.filmorate.storage.index.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.index.LikeBuffer;
+import ru.yandex.practicum.filmorate.storage.index.SocialIndex;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureJson
+@ContextConfiguration(classes = FilmorateApplication.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class DbImportStorageTest {
+    private final NamedParameterJdbcOperations jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+    private FilmPopularityIndex popularityIndex;
+    private FilmSearchIndex searchIndex;
+    private SocialIndex socialIndex;
+    private FilmCache filmCache;
+    private DbFilmStorage filmStorage;
+    private DbUserStorage userStorage;
+    private ImportServiceImpl importService;
+
+    @BeforeEach
+    void init() {
+        popularityIndex = new FilmPopularityIndex(jdbcTemplate);
+        searchIndex = new FilmSearchIndex(jdbcTemplate);
+        socialIndex = new SocialIndex(jdbcTemplate, 10);
+        var referenceData = new ReferenceDataCache(jdbcTemplate);
+        filmCache = new FilmCache(100, Duration.ofMinutes(10));
+        var likeBuffer = new LikeBuffer(jdbcTemplate, transactionManager, popularityIndex, socialIndex,
+                false, LikeBuffer.Durability.GROUP, 1000);
+        filmStorage = new DbFilmStorage(jdbcTemplate, popularityIndex, searchIndex, socialIndex, referenceData,
+                filmCache, likeBuffer);
+        userStorage = new DbUserStorage(jdbcTemplate, popularityIndex, socialIndex, likeBuffer,
+                new RecentFeedCache(50, 100));
+        var importStorage = new DbImportStorage(jdbcTemplate, popularityIndex, searchIndex, socialIndex,
+                referenceData, likeBuffer);
+        importService = new ImportServiceImpl(importStorage, transactionManager,
+                objectMapper,
+                Validation.buildDefaultValidatorFactory().getValidator(), 2, 100);
+    }
+
+    @Test
+    void importFilmsNdjson() throws IOException {
+        new DbDirectorStorage(jdbcTemplate, searchIndex, filmCache).create(new Director(0, "Director"));
+        var result = importService.importFilms(body(
+                "{\"name\":\"first\",\"releaseDate\":\"2000-01-01\",\"duration\":100,\"mpa\":{\"id\":1}," +
+                        "\"genres\":[{\"id\":1},{\"id\":2},{\"id\":1}],\"directors\":[{\"id\":1}]}",
+                "",
+                "{\"name\":\"\",\"releaseDate\":\"2000-01-01\",\"duration\":100}",
+                "{\"name\":\"second\",\"releaseDate\":\"2000-01-01\",\"duration\":100,\"mpa\":{\"id\":99}}",
+                "not json",
+                "{\"name\":\"third\",\"releaseDate\":\"2001-01-01\",\"duration\":90,\"genres\":[{\"id\":3}]}"
+        ), ImportFormat.NDJSON);
+
+        assertThat(result.getTotal()).isEqualTo(5);
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getFailed()).isEqualTo(3);
+        assertThat(result.getErrors()).extracting(ImportError::getLine).containsExactly(3L, 4L, 5L);
+        assertThat(result.getErrors().get(1).getMessage()).isEqualTo("mpa with id 99 not found");
+
+        var films = filmStorage.findAll();
+        assertThat(films).extracting(Film::getName).containsExactly("first", "third");
+        assertThat(films.get(0).getGenres()).extracting(Genre::getId).containsExactly(1, 2);
+        assertThat(films.get(0).getDirectors()).extracting(Director::getName).containsExactly("Director");
+        assertThat(popularityIndex.top(10, 3, null)).containsExactly(films.get(1).getId());
+    }
+
+    @Test
+    void importFilmsWithIdsRestartsIdGenerator() throws IOException {
+        var result = importService.importFilms(body(
+                "id,name,description,releaseDate,duration,mpa,genres",
+                "5,first,\"with, comma\",2000-01-01,100,1,1;2",
+                "5,duplicate,,2000-01-01,100,,",
+                "7,third,,2000-01-01,100,2,"
+        ), ImportFormat.CSV);
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(ImportError::getLine).containsExactly(3L);
+        assertThat(filmStorage.findById(5L).orElseThrow().getDescription()).isEqualTo("with, comma");
+
+        var created = filmStorage.create(new Film(0, "new", "description", LocalDate.of(2000, 1, 1), 100,
+                new Mpa(1, null), new LinkedHashSet<>(), new LinkedHashSet<>()));
+        assertThat(created.getId()).isEqualTo(8);
+    }
+
+    @Test
+    void importUsersFriendsAndLikes() throws IOException {
+        var users = importService.importUsers(body(
+                "email,login,name,birthday",
+                "first@mail.ru,first,First,1990-01-01",
+                "second@mail.ru,second,,1990-01-01",
+                "wrong,third,,1990-01-01"
+        ), ImportFormat.CSV);
+        assertThat(users.getImported()).isEqualTo(2);
+        assertThat(users.getErrors()).extracting(ImportError::getLine).containsExactly(4L);
+
+        var friends = importService.importFriends(body(
+                "{\"userId\":1,\"friendId\":2}",
+                "{\"userId\":1,\"friendId\":1}",
+                "{\"userId\":1,\"friendId\":3}"
+        ), ImportFormat.NDJSON);
+        assertThat(friends.getImported()).isEqualTo(1);
+        assertThat(friends.getFailed()).isEqualTo(2);
+        assertThat(userStorage.getFriends(1L)).hasSize(1);
+
+        var film = filmStorage.create(new Film(0, "film", "description", LocalDate.of(2000, 1, 1), 100,
+                new Mpa(1, null), new LinkedHashSet<>(), new LinkedHashSet<>()));
+        var likes = importService.importLikes(body(
+                "filmId,userId",
+                film.getId() + ",1",
+                film.getId() + ",2",
+                film.getId() + ",1",
+                "99,1"
+        ), ImportFormat.CSV);
+        assertThat(likes.getImported()).isEqualTo(3);
+        assertThat(likes.getErrors()).extracting(ImportError::getMessage).containsExactly("film with id 99 not found");
+        assertThat(popularityIndex.getLikes(film.getId())).isEqualTo(2);
+        assertThat(jdbcTemplate.getJdbcOperations().queryForObject("SELECT like_count FROM film WHERE id = ?",
+                Long.class, film.getId())).isEqualTo(2);
+    }
+
+    private static InputStream body(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
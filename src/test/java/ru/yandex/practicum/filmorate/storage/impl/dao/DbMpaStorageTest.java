@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.index.ReferenceDataCache;
 
 import java.util.Map;
 
@@ -29,7 +30,7 @@ class DbMpaStorageTest {
 
     @BeforeEach
     public void init() {
-        dbMpaStorage = new DbMpaStorage(jdbcTemplate);
+        dbMpaStorage = new DbMpaStorage(new ReferenceDataCache(jdbcTemplate));
     }
 
     @Test
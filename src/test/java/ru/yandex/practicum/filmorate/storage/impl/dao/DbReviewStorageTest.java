@@ -0,0 +1,117 @@
+package ru.yandex.practicum.filmorate.storage.impl.dao;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.storage.index.ReviewRankIndex;
+import ru.yandex.practicum.filmorate.storage.index.ReviewUsefulCounters;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class DbReviewStorageTest {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcOperations namedJdbcTemplate;
+    private DbReviewStorage dbReviewStorage;
+    private long reviewId;
+    private long userId;
+    private long filmId;
+
+    @BeforeEach
+    public void init() {
+        dbReviewStorage = new DbReviewStorage(jdbcTemplate, new ReviewUsefulCounters(namedJdbcTemplate, false),
+                new ReviewRankIndex(namedJdbcTemplate));
+        jdbcTemplate.update("insert into users (email, login, name) values ('user@mail.com', 'login', 'name')");
+        userId = jdbcTemplate.queryForObject("select max(id) from users", Long.class);
+        jdbcTemplate.update("insert into film (name, duration) values ('film', 100)");
+        filmId = jdbcTemplate.queryForObject("select max(id) from film", Long.class);
+        reviewId = addReview(dbReviewStorage);
+    }
+
+    @Test
+    public void repeatedVoteChangesNothing() {
+        assertThat(dbReviewStorage.addLike(reviewId, userId)).isTrue();
+        assertThat(dbReviewStorage.addLike(reviewId, userId)).isFalse();
+        assertThat(dbReviewStorage.getById(reviewId).getUseful()).isEqualTo(1);
+    }
+
+    @Test
+    public void flippedVoteMovesUsefulByTwo() {
+        dbReviewStorage.addLike(reviewId, userId);
+        assertThat(dbReviewStorage.addDislike(reviewId, userId)).isTrue();
+        assertThat(dbReviewStorage.getById(reviewId).getUseful()).isEqualTo(-1);
+        assertThat(dbReviewStorage.deleteLike(reviewId, userId)).isFalse();
+        assertThat(dbReviewStorage.deleteDislike(reviewId, userId)).isTrue();
+        assertThat(dbReviewStorage.getById(reviewId).getUseful()).isEqualTo(0);
+    }
+
+    @Test
+    public void countedVotesAreReadBeforeFlush() {
+        var counters = new ReviewUsefulCounters(namedJdbcTemplate, true);
+        var rankIndex = new ReviewRankIndex(namedJdbcTemplate);
+        rankIndex.rebuild();
+        var countingStorage = new DbReviewStorage(jdbcTemplate, counters, rankIndex);
+        var secondReviewId = addReview(countingStorage);
+        countingStorage.addDislike(reviewId, userId);
+        countingStorage.addLike(secondReviewId, userId);
+        assertThat(countingStorage.getById(reviewId).getUseful()).isEqualTo(-1);
+        assertThat(countingStorage.getFilmReviews(filmId, 10))
+                .extracting(Review::getReviewId)
+                .containsExactly(secondReviewId, reviewId);
+        assertThat(jdbcTemplate.queryForObject("select useful from review where id = ?", Long.class, reviewId))
+                .isEqualTo(0);
+
+        counters.flush();
+        assertThat(jdbcTemplate.queryForObject("select useful from review where id = ?", Long.class, reviewId))
+                .isEqualTo(-1);
+        assertThat(countingStorage.getAll(10))
+                .extracting(Review::getUseful)
+                .containsExactly(1L, -1L);
+    }
+
+    @Test
+    public void pagesFollowUsefulOrder() {
+        var secondReviewId = addReview(dbReviewStorage);
+        var thirdReviewId = addReview(dbReviewStorage);
+        dbReviewStorage.addLike(thirdReviewId, userId);
+        dbReviewStorage.addDislike(reviewId, userId);
+        assertThat(dbReviewStorage.getFilmReviews(filmId, 10))
+                .extracting(Review::getReviewId)
+                .containsExactly(thirdReviewId, secondReviewId, reviewId);
+        assertThat(dbReviewStorage.getPage(filmId, thirdReviewId, 0, 10))
+                .extracting(Review::getReviewId)
+                .containsExactly(secondReviewId, reviewId);
+        assertThat(dbReviewStorage.getPage(null, null, 1, 1))
+                .extracting(Review::getReviewId)
+                .containsExactly(secondReviewId);
+
+        jdbcTemplate.update("delete from review where id = ?", secondReviewId);
+        assertThat(dbReviewStorage.getPage(filmId, null, 1, 1))
+                .extracting(Review::getReviewId)
+                .containsExactly(reviewId);
+    }
+
+    @Test
+    public void voteOfUnknownUserFails() {
+        assertThatThrownBy(() -> dbReviewStorage.addLike(reviewId, 999L))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    private long addReview(DbReviewStorage storage) {
+        return storage.addAndReturnId(Review.builder()
+                .content("review")
+                .isPositive(true)
+                .userId(userId)
+                .filmId(filmId)
+                .build());
+    }
+}
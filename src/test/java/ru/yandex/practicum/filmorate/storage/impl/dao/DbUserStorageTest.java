@@ -7,7 +7,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikeBuffer;
+import ru.yandex.practicum.filmorate.storage.index.RecentFeedCache;
+import ru.yandex.practicum.filmorate.storage.index.SocialIndex;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -19,16 +26,22 @@ import static org.assertj.core.api.Assertions.assertThat;
 @JdbcTest
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
 class DbUserStorageTest {
 
     private final NamedParameterJdbcOperations jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
     private User user;
     private User secondUser;
     private DbUserStorage userStorage;
 
     @BeforeEach
     public void init() {
-        userStorage = new DbUserStorage(jdbcTemplate);
+        var popularityIndex = new FilmPopularityIndex(jdbcTemplate);
+        var socialIndex = new SocialIndex(jdbcTemplate, 10);
+        userStorage = new DbUserStorage(jdbcTemplate, popularityIndex, socialIndex,
+                new LikeBuffer(jdbcTemplate, transactionManager, popularityIndex, socialIndex,
+                false, LikeBuffer.Durability.GROUP, 1000), new RecentFeedCache(50, 100));
         user = new User(10, "user@mail.com", "user_login", "user_name",
                 LocalDate.of(2000, 5, 3), new HashSet<>());
         secondUser = new User(2, "newuser@mail.com", "new_user_login", "new_user_name",
@@ -92,6 +105,14 @@ class DbUserStorageTest {
                 .isEqualTo(user);
     }
 
+    @Test
+    public void findByIdsKeepsRequestOrder() {
+        var usersId = createUsers();
+        assertThat(userStorage.findByIds(List.of(usersId.get(2), 100L, usersId.get(0))))
+                .extracting(User::getId)
+                .containsExactly(usersId.get(2), usersId.get(0));
+    }
+
     @Test
     public void getFriendsEmpty() {
         var userId = userStorage.create(user).getId();
@@ -136,6 +157,27 @@ class DbUserStorageTest {
                 .hasSize(1);
     }
 
+    @Test
+    public void getCommonFriendsFollowsChanges() {
+        var usersId = createUsers();
+        var fourthUser = new User(4, "fourthuser@mail.com", "user_login4", "user_name",
+                LocalDate.of(2003, 8, 6), new HashSet<>());
+        var fourthId = userStorage.create(fourthUser).getId();
+        userStorage.addFriends(usersId.get(0), usersId.get(2));
+        userStorage.addFriends(usersId.get(1), usersId.get(2));
+        userStorage.addFriends(usersId.get(0), fourthId);
+        userStorage.addFriends(usersId.get(1), fourthId);
+        assertThat(userStorage.getCommonFriends(usersId.get(0), usersId.get(1)))
+                .extracting(User::getId)
+                .containsExactly(usersId.get(2), fourthId);
+        userStorage.deleteFriends(usersId.get(1), usersId.get(2));
+        assertThat(userStorage.getCommonFriends(usersId.get(0), usersId.get(1)))
+                .extracting(User::getId)
+                .containsExactly(fourthId);
+        userStorage.delete(fourthId);
+        assertThat(userStorage.getCommonFriends(usersId.get(0), usersId.get(1))).isEmpty();
+    }
+
     private List<Long> createUsers() {
         List<Long> usersId = new ArrayList<>();
         usersId.add(userStorage.create(user).getId());
@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.storage.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.SlowQuery;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@ContextConfiguration(classes = FilmorateApplication.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class SlowQueryDataSourceTest {
+
+    private final DataSource dataSource;
+
+    @Test
+    void slowStatementsAreKeptWithParametersAndPlan() {
+        var slowQueryLog = new SlowQueryLog(Duration.ZERO, 2, true);
+        var jdbcTemplate = new NamedParameterJdbcTemplate(new SlowQueryDataSource(dataSource, () -> slowQueryLog));
+
+        jdbcTemplate.queryForList("SELECT name FROM genre WHERE id = :id",
+                new MapSqlParameterSource("id", 2), String.class);
+        jdbcTemplate.update("UPDATE genre SET name = name WHERE id = :id", new MapSqlParameterSource("id", 3));
+        jdbcTemplate.batchUpdate("UPDATE genre SET name = name WHERE id = :id", new MapSqlParameterSource[]{
+                new MapSqlParameterSource("id", 4), new MapSqlParameterSource("id", 5)});
+
+        var slowest = slowQueryLog.getSlowest();
+        assertThat(slowest).hasSize(2);
+        assertThat(slowest.get(0).getDurationMillis()).isGreaterThanOrEqualTo(slowest.get(1).getDurationMillis());
+        assertThat(slowest).extracting(SlowQuery::getPlan).doesNotContainNull();
+        var select = new SlowQueryLog(Duration.ZERO, 10, true);
+        new NamedParameterJdbcTemplate(new SlowQueryDataSource(dataSource, () -> select))
+                .queryForList("SELECT name FROM genre WHERE id = :id", new MapSqlParameterSource("id", 2),
+                        String.class);
+        assertThat(select.getSlowest()).singleElement().satisfies(query -> {
+            assertThat(query.getSql()).isEqualTo("SELECT name FROM genre WHERE id = ?");
+            assertThat(query.getParameters()).containsExactly("2");
+            assertThat(query.getPlan()).containsIgnoringCase("genre");
+        });
+    }
+
+    @Test
+    void fastStatementsAreNotKept() {
+        var slowQueryLog = new SlowQueryLog(Duration.ofMinutes(1), 10, true);
+        var jdbcTemplate = new NamedParameterJdbcTemplate(new SlowQueryDataSource(dataSource, () -> slowQueryLog));
+
+        jdbcTemplate.queryForList("SELECT name FROM genre", new MapSqlParameterSource(), String.class);
+
+        assertThat(slowQueryLog.getSlowest()).isEmpty();
+    }
+}
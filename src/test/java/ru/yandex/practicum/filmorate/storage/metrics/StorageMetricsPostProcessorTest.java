@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.storage.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StorageMetricsPostProcessorTest {
+
+    private PrometheusMeterRegistry registry;
+    private StorageMetricsPostProcessor postProcessor;
+
+    @BeforeEach
+    void setUp() {
+        registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        var beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("meterRegistry", registry);
+        postProcessor = new StorageMetricsPostProcessor(beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+
+    @Test
+    void storageCallsAreTimedAndCounted() {
+        var storage = (GenreStorage) postProcessor.postProcessAfterInitialization(new GenreStorage() {
+            @Override
+            public List<Genre> findAll() {
+                return List.of(new Genre(1, "Комедия"), new Genre(2, "Драма"));
+            }
+
+            @Override
+            public Optional<Genre> findById(Integer id) {
+                throw new IllegalStateException("broken");
+            }
+        }, "genreStorage");
+
+        storage.findAll();
+        storage.findAll();
+        assertThatThrownBy(() -> storage.findById(1)).isInstanceOf(IllegalStateException.class);
+
+        var findAll = registry.find("filmorate.storage.calls")
+                .tags("storage", "GenreStorage", "method", "findAll").timer();
+        assertThat(findAll).isNotNull();
+        assertThat(findAll.count()).isEqualTo(2);
+        assertThat(registry.get("filmorate.storage.rows").tags("method", "findAll").summary().totalAmount())
+                .isEqualTo(4);
+        assertThat(registry.get("filmorate.storage.errors").tags("method", "findById").counter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("filmorate.storage.calls").tags("method", "findById").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.scrape())
+                .contains("filmorate_storage_calls_seconds_bucket{")
+                .contains("filmorate_storage_rows_bucket{");
+    }
+
+    @Test
+    void otherBeansAreNotWrapped() {
+        var bean = new Object();
+        assertThat(postProcessor.postProcessAfterInitialization(bean, "bean")).isSameAs(bean);
+    }
+}